@@ -0,0 +1,236 @@
+package ru.loolzaaa.games.vuegamingroomjavaserver.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.pojo.Game;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.pojo.Member;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service.GameService;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.websocket.GameWebSocketHandler;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.websocket.WebSocketEventProcessor;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.security.Principal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * In-memory game, services and websocket sessions for benchmarks, like in integration tests of the starter.
+ */
+final class BenchmarkStubs {
+
+    static final String TICK = "TICK";
+
+    static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private BenchmarkStubs() {
+    }
+
+    static GameService<GameImpl> gameService() {
+        return new GameService<>() {
+            @Override
+            public String getGameName() {
+                return GameImpl.NAME;
+            }
+
+            @Override
+            public GameImpl createGameInstance() {
+                return new GameImpl();
+            }
+
+            @Override
+            public void startNewGame(Game g, List<Member> members) {
+            }
+        };
+    }
+
+    static WebSocketEventProcessor webSocketEventProcessor() {
+        return new WebSocketEventProcessor() {
+            @Override
+            public JsonNode createGameState(Game g, String userId) {
+                GameImpl game = (GameImpl) g;
+                ObjectNode state = MAPPER.createObjectNode();
+                state.put("turn", game.turn);
+                state.put("player", userId);
+                state.putArray("board").add(1).add(0).add(2).add(0).add(1).add(0).add(2).add(0).add(1);
+                return state;
+            }
+
+            @Override
+            public void updateGameSettings(JsonNode settingsNode, Game g, Consumer<JsonNode> sendMessage, Consumer<String> callbackEvent) {
+            }
+
+            @Override
+            public JsonNode startGame(Game g, String userId) {
+                return null;
+            }
+
+            @Override
+            public JsonNode restartGame(Game g, String userId) {
+                return null;
+            }
+
+            @Override
+            public void incomingEvent(ObjectNode eventNode, Game g, String userId, Consumer<JsonNode> sendMessage, Consumer<String> callbackEvent) {
+                ((GameImpl) g).turn++;
+            }
+
+            @Override
+            public ObjectNode outgoingEvent(String event, Game g, String userId) {
+                ObjectNode eventNode = MAPPER.createObjectNode();
+                eventNode.put(EVENT_PROPERTY_NAME, event);
+                eventNode.putObject(DATA_PROPERTY_NAME).put("turn", ((GameImpl) g).turn);
+                return eventNode;
+            }
+
+            @Override
+            public boolean isOutgoingEventShared(String event, Game g) {
+                return TICK.equals(event);
+            }
+
+            @Override
+            public JsonNode processEventError(Exception e) {
+                return MAPPER.getNodeFactory().textNode(e.getMessage());
+            }
+        };
+    }
+
+    /**
+     * Connects new stub session of the user to the room of the websocket token.
+     */
+    static StubWebSocketSession connect(GameWebSocketHandler handler, String userId, String webSocketToken) throws Exception {
+        StubWebSocketSession session = new StubWebSocketSession();
+        session.getAttributes().put("token", userId + ":" + webSocketToken);
+        handler.afterConnectionEstablished(session);
+        return session;
+    }
+
+    static class GameImpl implements Game {
+
+        static final String NAME = "BENCHMARK";
+
+        int turn;
+
+        @Override
+        public String getName() {
+            return NAME;
+        }
+
+        @Override
+        public int getMinPlayers() {
+            return 1;
+        }
+
+        @Override
+        public int getMaxPlayers() {
+            return 200;
+        }
+    }
+
+    /**
+     * Session that only counts sent messages.
+     */
+    static class StubWebSocketSession implements WebSocketSession {
+
+        private static int idSequence;
+
+        private final String id = String.valueOf(++idSequence);
+
+        private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+
+        private volatile boolean open = true;
+
+        long sentMessages;
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public URI getUri() {
+            return null;
+        }
+
+        @Override
+        public HttpHeaders getHandshakeHeaders() {
+            return HttpHeaders.EMPTY;
+        }
+
+        @Override
+        public Map<String, Object> getAttributes() {
+            return attributes;
+        }
+
+        @Override
+        public Principal getPrincipal() {
+            return null;
+        }
+
+        @Override
+        public InetSocketAddress getLocalAddress() {
+            return null;
+        }
+
+        @Override
+        public InetSocketAddress getRemoteAddress() {
+            return null;
+        }
+
+        @Override
+        public String getAcceptedProtocol() {
+            return null;
+        }
+
+        @Override
+        public void setTextMessageSizeLimit(int messageSizeLimit) {
+        }
+
+        @Override
+        public int getTextMessageSizeLimit() {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        public void setBinaryMessageSizeLimit(int messageSizeLimit) {
+        }
+
+        @Override
+        public int getBinaryMessageSizeLimit() {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        public List<WebSocketExtension> getExtensions() {
+            return List.of();
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) {
+            sentMessages++;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+
+        @Override
+        public void close(CloseStatus status) {
+            open = false;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package ru.loolzaaa.games.vuegamingroomjavaserver.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.dto.RoomDTO;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service.RoomService;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.websocket.GameWebSocketHandler;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing and dispatching of incoming text messages of one session.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HandleMessageBenchmark {
+
+    private static final TextMessage GAME_EVENT = new TextMessage(
+            "{\"event\":\"MOVE\",\"code\":\"ABCD\",\"data\":{\"from\":[1,2],\"to\":[3,4],\"piece\":\"knight\"}}");
+
+    private static final TextMessage PING = new TextMessage("{\"event\":\"PING\"}");
+
+    GameWebSocketHandler handler;
+
+    WebSocketSession session;
+
+    @Setup
+    public void setUp() throws Exception {
+        RoomService roomService = new RoomService(BenchmarkStubs.gameService());
+        handler = new GameWebSocketHandler(BenchmarkStubs.MAPPER, roomService, BenchmarkStubs.webSocketEventProcessor());
+        RoomDTO room = roomService.createRoom("user-0", "user-0");
+        handler.createNewSessionsListForRoom(room.getWsToken(), room.getCode());
+        session = BenchmarkStubs.connect(handler, room.getUserId(), room.getWsToken());
+    }
+
+    @Benchmark
+    public void gameEvent() throws Exception {
+        handler.handleMessage(session, GAME_EVENT);
+    }
+
+    @Benchmark
+    public void ping() throws Exception {
+        handler.handleMessage(session, PING);
+    }
+}
@@ -0,0 +1,54 @@
+package ru.loolzaaa.games.vuegamingroomjavaserver.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.pojo.Member;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.pojo.Room;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Member lookup in a room.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RoomBenchmark {
+
+    @Param({"2", "20", "200"})
+    int membersCount;
+
+    Room<BenchmarkStubs.GameImpl> room;
+
+    String[] userIds;
+
+    int index;
+
+    @Setup
+    public void setUp() {
+        room = new Room<>("ABCD", "token", new BenchmarkStubs.GameImpl());
+        userIds = new String[membersCount];
+        for (int i = 0; i < membersCount; i++) {
+            userIds[i] = "user-" + i;
+            room.addMember(new Member(userIds[i], "nickname-" + i, "#000000"));
+        }
+    }
+
+    @Benchmark
+    public Member getMemberByUserId() {
+        index = (index + 1) % userIds.length;
+        return room.getMemberByUserId(userIds[index]);
+    }
+}
@@ -0,0 +1,69 @@
+package ru.loolzaaa.games.vuegamingroomjavaserver.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.pojo.Room;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service.RoomService;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.task.RoomCleanTask;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.websocket.GameWebSocketHandler;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One clean run over many rooms whose expiration check is due.
+ * <p>
+ * {@code EVICT}: all rooms are expired lobbies and are removed with their sessions lists.
+ * {@code RESCHEDULE}: all rooms have started games that are not expired yet,
+ * so every room is checked and put back to the expiration queue.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class RoomCleanBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    int roomsCount;
+
+    @Param({"EVICT", "RESCHEDULE"})
+    String scenario;
+
+    RoomCleanTask roomCleanTask;
+
+    // Комнаты заново создаются перед каждым прогоном: после очистки их сроки уже не наступили бы
+    @Setup(Level.Iteration)
+    public void setUp() {
+        RoomService roomService = new RoomService(BenchmarkStubs.gameService());
+        // Нулевой TTL лобби: проверка каждой комнаты наступает сразу
+        roomService.setLobbyTtl(Duration.ZERO);
+        GameWebSocketHandler handler =
+                new GameWebSocketHandler(BenchmarkStubs.MAPPER, roomService, BenchmarkStubs.webSocketEventProcessor());
+        boolean gameStarted = "RESCHEDULE".equals(scenario);
+        for (int i = 0; i < roomsCount; i++) {
+            // Четырехбуквенных кодов на миллион комнат не хватит
+            Room<BenchmarkStubs.GameImpl> room = new Room<>("R" + i, "token-" + i, new BenchmarkStubs.GameImpl());
+            room.setGameStarted(gameStarted);
+            roomService.restoreRoom(room);
+            handler.createNewSessionsListForRoom(room.getWebSocketToken(), room.getCode());
+        }
+        roomCleanTask = new RoomCleanTask(roomService, handler);
+    }
+
+    @Benchmark
+    public void clean() {
+        roomCleanTask.clean();
+    }
+}
@@ -0,0 +1,94 @@
+package ru.loolzaaa.games.vuegamingroomjavaserver.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.dto.RoomDTO;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service.RoomService;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Room creation and joining from several threads at once.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class RoomServiceBenchmark {
+
+    private static final int MEMBERS_COUNT = 200;
+
+    @State(Scope.Benchmark)
+    public static class CreateState {
+
+        RoomService roomService;
+
+        @Setup
+        public void setUp() {
+            roomService = new RoomService(BenchmarkStubs.gameService());
+            // Созданные комнаты сразу удаляются, их сроки истечения не должны копиться
+            roomService.setLobbyTtl(Duration.ZERO);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class JoinState {
+
+        RoomService roomService;
+
+        String code;
+
+        @Setup
+        public void setUp() {
+            roomService = new RoomService(BenchmarkStubs.gameService());
+            code = roomService.createRoom("user-0", "user-0").getCode();
+            for (int i = 1; i < MEMBERS_COUNT; i++) {
+                roomService.joinToRoom(code, "user-" + i, "user-" + i);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+
+        int operations;
+
+        int memberIndex;
+    }
+
+    /**
+     * Creates and removes a room, expired room entries are cleaned every 1024 operations.
+     */
+    @Benchmark
+    public RoomDTO createRoom(CreateState state, ThreadState threadState) {
+        RoomDTO room = state.roomService.createRoom(null, "nickname");
+        String code = room.getCode();
+        state.roomService.removeRoom(code, state.roomService.getRooms().get(code));
+        if ((++threadState.operations & 1023) == 0) {
+            state.roomService.removeExpiredRooms();
+        }
+        return room;
+    }
+
+    /**
+     * Existing members rejoin the same room (e.g. after page reload).
+     */
+    @Benchmark
+    public RoomDTO joinToRoom(JoinState state, ThreadState threadState) {
+        threadState.memberIndex = (threadState.memberIndex + 1) % MEMBERS_COUNT;
+        String userId = "user-" + threadState.memberIndex;
+        return state.roomService.joinToRoom(state.code, userId, userId);
+    }
+}
@@ -0,0 +1,72 @@
+package ru.loolzaaa.games.vuegamingroomjavaserver.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.dto.RoomDTO;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service.RoomService;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.websocket.GameWebSocketHandler;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fan-out of one room event to all websocket sessions of the room.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SendEventBenchmark {
+
+    @Param({"2", "20", "200"})
+    int sessionsCount;
+
+    GameWebSocketHandler handler;
+
+    String code;
+
+    @Setup
+    public void setUp() throws Exception {
+        RoomService roomService = new RoomService(BenchmarkStubs.gameService());
+        handler = new GameWebSocketHandler(BenchmarkStubs.MAPPER, roomService, BenchmarkStubs.webSocketEventProcessor());
+        RoomDTO room = roomService.createRoom("user-0", "user-0");
+        code = room.getCode();
+        handler.createNewSessionsListForRoom(room.getWsToken(), code);
+        BenchmarkStubs.connect(handler, room.getUserId(), room.getWsToken());
+        for (int i = 1; i < sessionsCount; i++) {
+            RoomDTO member = roomService.joinToRoom(code, "user-" + i, "user-" + i);
+            BenchmarkStubs.connect(handler, member.getUserId(), room.getWsToken());
+        }
+    }
+
+    /**
+     * Game state is created for every session.
+     */
+    @Benchmark
+    public void gameState() {
+        handler.sendEvent(code, GameWebSocketHandler.GAME_STATE);
+    }
+
+    /**
+     * Shared event is created and encoded once for all sessions.
+     */
+    @Benchmark
+    public void sharedEvent() {
+        handler.sendEvent(code, BenchmarkStubs.TICK);
+    }
+
+    @Benchmark
+    public void membersUpdate() {
+        handler.sendEvent(code, GameWebSocketHandler.UPDATE_MEMBERS);
+    }
+}
@@ -1,45 +1,174 @@
 package ru.loolzaaa.games.vuegamingroomjavaserver.autoconfigure;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
 import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
 import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.controller.GameController;
 import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.controller.RoomController;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.metrics.GameServerMetrics;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.metrics.MeteredWebSocketEventProcessor;
 import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.pojo.Game;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service.ConsistentHashRoomRegistry;
 import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service.GameService;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service.GameTickScheduler;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service.LocalRoomRegistry;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service.RoomExecutor;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service.RoomRegistry;
 import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service.RoomService;
 import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.task.RoomCleanTask;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.task.RoomSnapshotTask;
 import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.websocket.GameWebSocketHandler;
 import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.websocket.TokenHandshakeInterceptor;
 import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.websocket.WebSocketEventProcessor;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
 @AutoConfiguration
 @EnableScheduling
+@EnableConfigurationProperties(JavaServerProperties.class)
 public class JavaServerAutoConfiguration {
 
     private final static Logger log = LogManager.getLogger(JavaServerAutoConfiguration.class);
 
     @Bean
     @ConditionalOnMissingBean
-    RoomService roomService(GameService<? extends Game> gameService) {
-        return new RoomService(gameService);
+    RoomRegistry roomRegistry(JavaServerProperties properties) {
+        JavaServerProperties.Cluster cluster = properties.getCluster();
+        if (cluster.getNodes().isEmpty()) {
+            return new LocalRoomRegistry();
+        }
+        log.info("Cluster node {} of {}", cluster.getNode(), cluster.getNodes());
+        return new ConsistentHashRoomRegistry(cluster.getNode(), cluster.getNodes(), cluster.getVirtualNodes());
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    RoomService roomService(GameService<? extends Game> gameService, RoomRegistry roomRegistry, JavaServerProperties properties) {
+        RoomService roomService = new RoomService(gameService);
+        roomService.setRoomRegistry(roomRegistry);
+        roomService.setLobbyTtl(properties.getRoom().getLobbyTtl());
+        roomService.setGameTtl(properties.getRoom().getGameTtl());
+        roomService.setRoomCodeLength(properties.getRoom().getCodeLength());
+        return roomService;
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnMissingBean
+    RoomExecutor roomExecutor(JavaServerProperties properties) {
+        log.info("Room execution mode: {}", properties.getExecution().getMode());
+        return new RoomExecutor(properties.getExecution().getMode());
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    GameServerMetrics gameServerMetrics() {
+        return GameServerMetrics.NOOP;
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnMissingBean(name = "gameWebSocketOutboundExecutor")
+    ExecutorService gameWebSocketOutboundExecutor(JavaServerProperties properties) {
+        // Зависший клиент держит поток записи: виртуальный поток почти бесплатен, платформенных - ограниченное число
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            int threads = properties.getWebsocket().getOutbound().getThreads();
+            log.info("Virtual threads are not available, {} outbound websocket threads are used", threads);
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("ws-outbound-");
+            threadFactory.setDaemon(true);
+            return Executors.newFixedThreadPool(threads, threadFactory);
+        }
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnMissingBean(name = "gameWebSocketScheduler")
+    ScheduledExecutorService gameWebSocketScheduler() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("ws-scheduler-");
+        threadFactory.setDaemon(true);
+        return Executors.newSingleThreadScheduledExecutor(threadFactory);
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnMissingBean
+    GameTickScheduler gameTickScheduler(GameServerMetrics metrics, JavaServerProperties properties) {
+        GameTickScheduler gameTickScheduler = new GameTickScheduler(properties.getTick().getThreads());
+        gameTickScheduler.setMetrics(metrics);
+        return gameTickScheduler;
     }
 
     @Bean
     @ConditionalOnMissingBean
     GameWebSocketHandler gameWebSocketHandler(ObjectMapper mapper,
                                               RoomService roomService,
-                                              WebSocketEventProcessor webSocketEventProcessor) {
-        return new GameWebSocketHandler(mapper, roomService, webSocketEventProcessor);
+                                              WebSocketEventProcessor webSocketEventProcessor,
+                                              RoomExecutor roomExecutor,
+                                              @Qualifier("gameWebSocketOutboundExecutor") Executor outboundExecutor,
+                                              @Qualifier("gameWebSocketScheduler") ScheduledExecutorService scheduler,
+                                              GameServerMetrics metrics,
+                                              GameTickScheduler tickScheduler,
+                                              JavaServerProperties properties) {
+        if (metrics != GameServerMetrics.NOOP) {
+            webSocketEventProcessor = new MeteredWebSocketEventProcessor(webSocketEventProcessor, metrics);
+        }
+        GameWebSocketHandler gameWebSocketHandler = new GameWebSocketHandler(mapper, roomService, webSocketEventProcessor);
+        gameWebSocketHandler.setRoomExecutor(roomExecutor);
+        gameWebSocketHandler.setMetrics(metrics);
+        gameWebSocketHandler.setTickScheduler(tickScheduler);
+        metrics.bind(roomService, gameWebSocketHandler);
+        JavaServerProperties.Outbound outbound = properties.getWebsocket().getOutbound();
+        if (outbound.isAsync()) {
+            gameWebSocketHandler.setOutboundExecutor(outboundExecutor);
+        }
+        gameWebSocketHandler.setOutboundQueueCapacity(outbound.getQueueCapacity());
+        gameWebSocketHandler.setOutboundOverflowPolicy(outbound.getOverflowPolicy());
+        JavaServerProperties.MembersUpdate membersUpdate = properties.getWebsocket().getMembersUpdate();
+        gameWebSocketHandler.setScheduler(scheduler);
+        gameWebSocketHandler.setMembersUpdateDelay(membersUpdate.getDelay());
+        gameWebSocketHandler.setMembersUpdateMaxDelay(membersUpdate.getMaxDelay());
+        gameWebSocketHandler.setMemberDeltas(membersUpdate.isDeltas());
+        JavaServerProperties.GameState gameState = properties.getWebsocket().getGameState();
+        gameWebSocketHandler.setGameStateDiff(gameState.isDiff());
+        gameWebSocketHandler.setGameStateSnapshotInterval(gameState.getSnapshotInterval());
+        JavaServerProperties.Resume resume = properties.getWebsocket().getResume();
+        gameWebSocketHandler.setResumeGracePeriod(resume.getGracePeriod());
+        gameWebSocketHandler.setReplayBufferSize(resume.getBufferSize());
+        JavaServerProperties.RateLimit rateLimit = properties.getWebsocket().getRateLimit();
+        gameWebSocketHandler.setSessionRateLimit(rateLimit.getSessionRate());
+        gameWebSocketHandler.setSessionRateLimitBurst(rateLimit.getSessionBurst());
+        gameWebSocketHandler.setRoomRateLimit(rateLimit.getRoomRate());
+        gameWebSocketHandler.setRoomRateLimitBurst(rateLimit.getRoomBurst());
+        gameWebSocketHandler.setRateLimitPolicy(rateLimit.getPolicy());
+        JavaServerProperties.Compression compression = properties.getWebsocket().getCompression();
+        gameWebSocketHandler.setCompression(compression.isEnabled());
+        gameWebSocketHandler.setCompressionThreshold((int) compression.getThreshold().toBytes());
+        if (compression.isEnabled() && !compression.getReportInterval().isZero()) {
+            long interval = compression.getReportInterval().toMillis();
+            scheduler.scheduleAtFixedRate(gameWebSocketHandler::logCompressionStats, interval, interval, TimeUnit.MILLISECONDS);
+        }
+        return gameWebSocketHandler;
     }
 
     @Bean
@@ -50,14 +179,44 @@ public class JavaServerAutoConfiguration {
 
     @Bean
     @ConditionalOnMissingBean
-    RoomController roomController(GameWebSocketHandler gameWebSocketHandler, RoomService roomService) {
-        return new RoomController(gameWebSocketHandler, roomService);
+    RoomController roomController(GameWebSocketHandler gameWebSocketHandler, RoomService roomService, RoomExecutor roomExecutor) {
+        return new RoomController(gameWebSocketHandler, roomService, roomExecutor);
     }
 
     @Bean
     @ConditionalOnMissingBean
-    RoomCleanTask roomCleanTask(GameWebSocketHandler gameWebSocketHandler, RoomService roomService) {
-        return new RoomCleanTask(roomService, gameWebSocketHandler);
+    RoomCleanTask roomCleanTask(GameWebSocketHandler gameWebSocketHandler, RoomService roomService, GameServerMetrics metrics) {
+        RoomCleanTask roomCleanTask = new RoomCleanTask(roomService, gameWebSocketHandler);
+        roomCleanTask.setMetrics(metrics);
+        return roomCleanTask;
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "java-server.snapshot", name = "directory")
+    RoomSnapshotTask roomSnapshotTask(GameWebSocketHandler gameWebSocketHandler,
+                                      RoomService roomService,
+                                      GameService<? extends Game> gameService,
+                                      RoomExecutor roomExecutor,
+                                      JavaServerProperties properties) throws IOException {
+        JavaServerProperties.Snapshot snapshot = properties.getSnapshot();
+        RoomSnapshotTask roomSnapshotTask = new RoomSnapshotTask(roomService, gameService, gameWebSocketHandler,
+                roomExecutor, Path.of(snapshot.getDirectory()));
+        roomSnapshotTask.setMaxJournalSize(snapshot.getMaxJournalSize().toBytes());
+        roomSnapshotTask.restore();
+        return roomSnapshotTask;
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(MeterRegistry.class)
+    static class MicrometerMetricsConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean
+        GameServerMetrics micrometerGameServerMetrics(ObjectProvider<MeterRegistry> meterRegistry) {
+            // Без actuator реестр не создается, метрики пишутся в глобальный
+            return new MicrometerGameServerMetrics(meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+        }
     }
 
     @Configuration(proxyBeanMethods = false)
@@ -0,0 +1,506 @@
+package ru.loolzaaa.games.vuegamingroomjavaserver.autoconfigure;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service.RoomExecutionMode;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.websocket.OverflowPolicy;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.websocket.RateLimitPolicy;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@ConfigurationProperties(prefix = "java-server")
+public class JavaServerProperties {
+
+    private final Room room = new Room();
+
+    private final WebSocket websocket = new WebSocket();
+
+    private final Execution execution = new Execution();
+
+    private final Cluster cluster = new Cluster();
+
+    private final Snapshot snapshot = new Snapshot();
+
+    private final Tick tick = new Tick();
+
+    public Room getRoom() {
+        return room;
+    }
+
+    public Execution getExecution() {
+        return execution;
+    }
+
+    public Cluster getCluster() {
+        return cluster;
+    }
+
+    public WebSocket getWebsocket() {
+        return websocket;
+    }
+
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public Tick getTick() {
+        return tick;
+    }
+
+    public static class Room {
+
+        /**
+         * Time without activity after which a room with not started game is removed.
+         */
+        private Duration lobbyTtl = Duration.ofMinutes(60);
+
+        /**
+         * Time without activity after which a room with started game is removed.
+         */
+        private Duration gameTtl = Duration.ofMinutes(60);
+
+        /**
+         * Number of letters in room codes, from 1 to 6.
+         */
+        private int codeLength = 4;
+
+        public Duration getLobbyTtl() {
+            return lobbyTtl;
+        }
+
+        public void setLobbyTtl(Duration lobbyTtl) {
+            this.lobbyTtl = lobbyTtl;
+        }
+
+        public Duration getGameTtl() {
+            return gameTtl;
+        }
+
+        public void setGameTtl(Duration gameTtl) {
+            this.gameTtl = gameTtl;
+        }
+
+        public int getCodeLength() {
+            return codeLength;
+        }
+
+        public void setCodeLength(int codeLength) {
+            this.codeLength = codeLength;
+        }
+    }
+
+    public static class Cluster {
+
+        /**
+         * Address of this node, must be one of {@code nodes}.
+         */
+        private String node;
+
+        /**
+         * Addresses of all cluster nodes (e.g. {@code http://game-1:8080}). Empty list means single node mode.
+         */
+        private List<String> nodes = new ArrayList<>();
+
+        /**
+         * Number of points of every node on the consistent hashing ring.
+         */
+        private int virtualNodes = 160;
+
+        public String getNode() {
+            return node;
+        }
+
+        public void setNode(String node) {
+            this.node = node;
+        }
+
+        public List<String> getNodes() {
+            return nodes;
+        }
+
+        public void setNodes(List<String> nodes) {
+            this.nodes = nodes;
+        }
+
+        public int getVirtualNodes() {
+            return virtualNodes;
+        }
+
+        public void setVirtualNodes(int virtualNodes) {
+            this.virtualNodes = virtualNodes;
+        }
+    }
+
+    public static class Snapshot {
+
+        /**
+         * Directory for room snapshot and journal files. Rooms are not persisted if not set.
+         */
+        private String directory;
+
+        /**
+         * Journal size after which a new full snapshot is written.
+         */
+        private DataSize maxJournalSize = DataSize.ofMegabytes(16);
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public DataSize getMaxJournalSize() {
+            return maxJournalSize;
+        }
+
+        public void setMaxJournalSize(DataSize maxJournalSize) {
+            this.maxJournalSize = maxJournalSize;
+        }
+    }
+
+    public static class Tick {
+
+        /**
+         * Number of timer threads for ticks of real-time games.
+         */
+        private int threads = 2;
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public void setThreads(int threads) {
+            this.threads = threads;
+        }
+    }
+
+    public static class Execution {
+
+        /**
+         * Where work of rooms is executed: {@code INLINE} on websocket container threads,
+         * {@code VIRTUAL} on virtual threads, one task of a room at a time,
+         * or {@code SHARDED} on a fixed pool, each room bound to one thread.
+         */
+        private RoomExecutionMode mode = RoomExecutionMode.INLINE;
+
+        public RoomExecutionMode getMode() {
+            return mode;
+        }
+
+        public void setMode(RoomExecutionMode mode) {
+            this.mode = mode;
+        }
+    }
+
+    public static class WebSocket {
+
+        private final Outbound outbound = new Outbound();
+
+        private final MembersUpdate membersUpdate = new MembersUpdate();
+
+        private final Compression compression = new Compression();
+
+        private final GameState gameState = new GameState();
+
+        private final Resume resume = new Resume();
+
+        private final RateLimit rateLimit = new RateLimit();
+
+        public Outbound getOutbound() {
+            return outbound;
+        }
+
+        public MembersUpdate getMembersUpdate() {
+            return membersUpdate;
+        }
+
+        public Compression getCompression() {
+            return compression;
+        }
+
+        public GameState getGameState() {
+            return gameState;
+        }
+
+        public Resume getResume() {
+            return resume;
+        }
+
+        public RateLimit getRateLimit() {
+            return rateLimit;
+        }
+    }
+
+    public static class RateLimit {
+
+        /**
+         * Incoming messages per second of one websocket session, zero disables the limit.
+         */
+        private double sessionRate;
+
+        /**
+         * Messages that one session may send at once above its rate.
+         */
+        private int sessionBurst = 20;
+
+        /**
+         * Incoming messages per second of all sessions of one room, zero disables the limit.
+         */
+        private double roomRate;
+
+        /**
+         * Messages that sessions of one room may send at once above its rate.
+         */
+        private int roomBurst = 100;
+
+        /**
+         * What to do with messages over the limit.
+         */
+        private RateLimitPolicy policy = RateLimitPolicy.DROP;
+
+        public double getSessionRate() {
+            return sessionRate;
+        }
+
+        public void setSessionRate(double sessionRate) {
+            this.sessionRate = sessionRate;
+        }
+
+        public int getSessionBurst() {
+            return sessionBurst;
+        }
+
+        public void setSessionBurst(int sessionBurst) {
+            this.sessionBurst = sessionBurst;
+        }
+
+        public double getRoomRate() {
+            return roomRate;
+        }
+
+        public void setRoomRate(double roomRate) {
+            this.roomRate = roomRate;
+        }
+
+        public int getRoomBurst() {
+            return roomBurst;
+        }
+
+        public void setRoomBurst(int roomBurst) {
+            this.roomBurst = roomBurst;
+        }
+
+        public RateLimitPolicy getPolicy() {
+            return policy;
+        }
+
+        public void setPolicy(RateLimitPolicy policy) {
+            this.policy = policy;
+        }
+    }
+
+    public static class Outbound {
+
+        /**
+         * Send messages from dedicated writer threads instead of the calling thread.
+         */
+        private boolean async = true;
+
+        /**
+         * Maximum number of not yet sent messages per websocket session.
+         */
+        private int queueCapacity = 256;
+
+        /**
+         * What to do when the session queue is full.
+         */
+        private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+
+        /**
+         * Number of writer threads, when virtual threads are not available.
+         */
+        private int threads = 32;
+
+        public boolean isAsync() {
+            return async;
+        }
+
+        public void setAsync(boolean async) {
+            this.async = async;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public OverflowPolicy getOverflowPolicy() {
+            return overflowPolicy;
+        }
+
+        public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public void setThreads(int threads) {
+            this.threads = threads;
+        }
+    }
+
+    public static class MembersUpdate {
+
+        /**
+         * Time window in which member updates of the room are merged into one broadcast.
+         * Zero disables coalescing.
+         */
+        private Duration delay = Duration.ofMillis(25);
+
+        /**
+         * Maximum time a member update can be postponed by a stream of new updates.
+         */
+        private Duration maxDelay = Duration.ofMillis(200);
+
+        /**
+         * Send MEMBER_ADDED / MEMBER_CHANGED / MEMBER_REMOVED deltas instead of full member list.
+         * Full UPDATE_MEMBERS snapshot is sent on connect and on client SYNC_MEMBERS request.
+         */
+        private boolean deltas = false;
+
+        public Duration getDelay() {
+            return delay;
+        }
+
+        public void setDelay(Duration delay) {
+            this.delay = delay;
+        }
+
+        public Duration getMaxDelay() {
+            return maxDelay;
+        }
+
+        public void setMaxDelay(Duration maxDelay) {
+            this.maxDelay = maxDelay;
+        }
+
+        public boolean isDeltas() {
+            return deltas;
+        }
+
+        public void setDeltas(boolean deltas) {
+            this.deltas = deltas;
+        }
+    }
+
+    public static class Compression {
+
+        /**
+         * Allow clients to request deflate compression of outgoing messages with
+         * {@code compression=deflate} handshake parameter.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Minimum size of encoded message to be compressed. Smaller messages are sent as is.
+         */
+        private DataSize threshold = DataSize.ofKilobytes(1);
+
+        /**
+         * Interval of compression statistics logging. Zero disables logging.
+         */
+        private Duration reportInterval = Duration.ZERO;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public DataSize getThreshold() {
+            return threshold;
+        }
+
+        public void setThreshold(DataSize threshold) {
+            this.threshold = threshold;
+        }
+
+        public Duration getReportInterval() {
+            return reportInterval;
+        }
+
+        public void setReportInterval(Duration reportInterval) {
+            this.reportInterval = reportInterval;
+        }
+    }
+
+    public static class Resume {
+
+        /**
+         * Time during which a dropped session stays in the room waiting for reconnection. Zero disables it.
+         */
+        private Duration gracePeriod = Duration.ZERO;
+
+        /**
+         * Maximum number of events kept for a dropped session, after that the full state is sent on reconnect.
+         */
+        private int bufferSize = 64;
+
+        public Duration getGracePeriod() {
+            return gracePeriod;
+        }
+
+        public void setGracePeriod(Duration gracePeriod) {
+            this.gracePeriod = gracePeriod;
+        }
+
+        public int getBufferSize() {
+            return bufferSize;
+        }
+
+        public void setBufferSize(int bufferSize) {
+            this.bufferSize = bufferSize;
+        }
+    }
+
+    public static class GameState {
+
+        /**
+         * Send GAME_STATE_PATCH (RFC 6902 JSON Patch) with changes since the last sent state,
+         * when it is smaller than the full GAME_STATE.
+         */
+        private boolean diff = false;
+
+        /**
+         * Maximum number of patches in a row, after that the full state is sent.
+         */
+        private int snapshotInterval = 20;
+
+        public boolean isDiff() {
+            return diff;
+        }
+
+        public void setDiff(boolean diff) {
+            this.diff = diff;
+        }
+
+        public int getSnapshotInterval() {
+            return snapshotInterval;
+        }
+
+        public void setSnapshotInterval(int snapshotInterval) {
+            this.snapshotInterval = snapshotInterval;
+        }
+    }
+}
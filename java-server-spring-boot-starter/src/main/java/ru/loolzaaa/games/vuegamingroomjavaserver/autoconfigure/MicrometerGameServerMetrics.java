@@ -0,0 +1,156 @@
+package ru.loolzaaa.games.vuegamingroomjavaserver.autoconfigure;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.metrics.GameServerMetrics;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.pojo.Game;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.pojo.Room;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service.RoomService;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.websocket.GameWebSocketHandler;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Game server metrics registered in Micrometer {@link MeterRegistry}.
+ * <p>
+ * Meters are created once per event or callback name and cached,
+ * so recording does not look up the registry.
+ */
+public class MicrometerGameServerMetrics implements GameServerMetrics {
+
+    private final MeterRegistry registry;
+
+    private final Timer messagesReceived;
+    private final Counter bytesReceived;
+    private final Timer messagesSent;
+    private final Counter bytesSent;
+    private final Counter errorsSent;
+    private final Counter roomsEvicted;
+    private final Timer ticks;
+    private final Counter ticksOverrun;
+
+    private final Map<String, Timer> eventTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> callbackTimers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> throttledCounters = new ConcurrentHashMap<>();
+
+    public MicrometerGameServerMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.messagesReceived = Timer.builder("java.server.messages.received")
+                .description("Processing time of incoming websocket messages")
+                .register(registry);
+        this.bytesReceived = Counter.builder("java.server.bytes.received")
+                .baseUnit("bytes")
+                .register(registry);
+        this.messagesSent = Timer.builder("java.server.messages.sent")
+                .description("Write time of outgoing websocket messages to a session")
+                .register(registry);
+        this.bytesSent = Counter.builder("java.server.bytes.sent")
+                .baseUnit("bytes")
+                .register(registry);
+        this.errorsSent = Counter.builder("java.server.errors.sent")
+                .description("ERROR events sent to clients")
+                .register(registry);
+        this.roomsEvicted = Counter.builder("java.server.rooms.evicted")
+                .description("Rooms removed after TTL")
+                .register(registry);
+        this.ticks = Timer.builder("java.server.ticks")
+                .description("Execution time of game ticks, including game state broadcast")
+                .register(registry);
+        this.ticksOverrun = Counter.builder("java.server.ticks.overrun")
+                .description("Game ticks skipped because the previous tick was late")
+                .register(registry);
+    }
+
+    @Override
+    public void bind(RoomService roomService, GameWebSocketHandler gameWebSocketHandler) {
+        Map<String, Room<? extends Game>> rooms = roomService.getRooms();
+        Gauge.builder("java.server.rooms", rooms, Map::size)
+                .register(registry);
+        Gauge.builder("java.server.members", rooms, MicrometerGameServerMetrics::countMembers)
+                .register(registry);
+        Gauge.builder("java.server.sessions.open", gameWebSocketHandler, GameWebSocketHandler::getOpenSessionsCount)
+                .register(registry);
+    }
+
+    @Override
+    public void messageReceived(int bytes, long nanos) {
+        messagesReceived.record(nanos, TimeUnit.NANOSECONDS);
+        bytesReceived.increment(bytes);
+    }
+
+    @Override
+    public void messageSent(int bytes, long nanos) {
+        messagesSent.record(nanos, TimeUnit.NANOSECONDS);
+        bytesSent.increment(bytes);
+    }
+
+    @Override
+    public void eventSent(String event, long nanos) {
+        Timer timer = eventTimers.get(event);
+        if (timer == null) {
+            timer = eventTimers.computeIfAbsent(event, e -> Timer.builder("java.server.events.sent")
+                    .description("Creation and enqueueing time of room events")
+                    .tag("event", e)
+                    .register(registry));
+        }
+        timer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void processorCallback(String callback, long nanos) {
+        Timer timer = callbackTimers.get(callback);
+        if (timer == null) {
+            timer = callbackTimers.computeIfAbsent(callback, c -> Timer.builder("java.server.processor.callbacks")
+                    .description("Execution time of websocket event processor callbacks")
+                    .tag("callback", c)
+                    .register(registry));
+        }
+        timer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void errorSent() {
+        errorsSent.increment();
+    }
+
+    @Override
+    public void messageThrottled(String limit) {
+        Counter counter = throttledCounters.get(limit);
+        if (counter == null) {
+            counter = throttledCounters.computeIfAbsent(limit, l -> Counter.builder("java.server.messages.throttled")
+                    .description("Incoming messages over the rate limit")
+                    .tag("limit", l)
+                    .register(registry));
+        }
+        counter.increment();
+    }
+
+    @Override
+    public void tickCompleted(long nanos) {
+        ticks.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void ticksOverrun(int count) {
+        ticksOverrun.increment(count);
+    }
+
+    @Override
+    public void roomsEvicted(int count) {
+        if (count > 0) {
+            roomsEvicted.increment(count);
+        }
+    }
+
+    private static double countMembers(Map<String, Room<? extends Game>> rooms) {
+        long count = 0;
+        for (Room<? extends Game> room : rooms.values()) {
+            count += room.getMembers().size();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,110 @@
+package ru.loolzaaa.games.vuegamingroomjavaserver;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.controller.RoomController;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.dto.RoomDTO;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service.ConsistentHashRoomRegistry;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service.RoomService;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.websocket.GameWebSocketHandler;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.*;
+
+class ClusterRoomRegistryTests {
+
+    static final List<String> NODES = List.of("http://node-1:8080", "http://node-2:8080", "http://node-3:8080");
+
+    final ObjectMapper mapper = new ObjectMapper();
+
+    final Map<String, ClusterNode> cluster = new LinkedHashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        IntegrationTestConfiguration configuration = new IntegrationTestConfiguration();
+        for (String node : NODES) {
+            RoomService roomService = new RoomService(configuration.gameService());
+            ConsistentHashRoomRegistry roomRegistry = new ConsistentHashRoomRegistry(node, NODES);
+            roomService.setRoomRegistry(roomRegistry);
+            GameWebSocketHandler gameWebSocketHandler =
+                    new GameWebSocketHandler(mapper, roomService, configuration.webSocketEventProcessor());
+            MockMvc mockMvc = standaloneSetup(new RoomController(gameWebSocketHandler, roomService)).build();
+            cluster.put(node, new ClusterNode(roomRegistry, roomService, mockMvc));
+        }
+    }
+
+    @Test
+    void shouldCreateRoomsOwnedByLocalNode() throws Exception {
+        for (Map.Entry<String, ClusterNode> entry : cluster.entrySet()) {
+            for (int i = 0; i < 10; i++) {
+                RoomDTO roomDTO = createRoom(entry.getValue(), "user-" + i);
+                for (ClusterNode node : cluster.values()) {
+                    assertEquals(entry.getKey(), node.roomRegistry().getOwner(roomDTO.getCode()));
+                }
+            }
+            assertEquals(10, entry.getValue().roomService().getRooms().size());
+        }
+    }
+
+    @Test
+    void shouldRedirectToOwnerWhenRoomIsHostedByAnotherNode() throws Exception {
+        ClusterNode owner = cluster.get(NODES.get(0));
+        ClusterNode another = cluster.get(NODES.get(1));
+        RoomDTO roomDTO = createRoom(owner, "test-id-1");
+
+        MvcResult mvcResult = another.mockMvc().perform(post("/room/join/{code}", roomDTO.getCode())
+                        .param("userId", "test-id-2")
+                        .param("nickname", "second"))
+                .andExpect(status().isTemporaryRedirect())
+                .andReturn();
+        assertEquals(NODES.get(0) + "/room/join/" + roomDTO.getCode(), mvcResult.getResponse().getHeader("Location"));
+        assertEquals(NODES.get(0), mapper.readTree(mvcResult.getResponse().getContentAsByteArray()).get("owner").asText());
+
+        owner.mockMvc().perform(post("/room/join/{code}", roomDTO.getCode())
+                        .param("userId", "test-id-2")
+                        .param("nickname", "second"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void shouldDistributeRoomCodesOverAllNodes() {
+        ConsistentHashRoomRegistry roomRegistry = cluster.get(NODES.get(0)).roomRegistry();
+        Map<String, Integer> roomsCount = new LinkedHashMap<>();
+        String letters = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+        for (char a : letters.toCharArray()) {
+            for (char b : letters.toCharArray()) {
+                for (char c : letters.toCharArray()) {
+                    roomsCount.merge(roomRegistry.getOwner("" + a + b + c + "A"), 1, Integer::sum);
+                }
+            }
+        }
+        int expected = letters.length() * letters.length() * letters.length() / NODES.size();
+        for (String node : NODES) {
+            int count = roomsCount.getOrDefault(node, 0);
+            assertTrue(count > expected * 0.7 && count < expected * 1.3, node + " owns " + count + " of codes");
+        }
+    }
+
+    private RoomDTO createRoom(ClusterNode node, String userId) throws Exception {
+        MvcResult mvcResult = node.mockMvc().perform(post("/room/create")
+                        .param("userId", userId)
+                        .param("nickname", "first"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andReturn();
+        return mapper.readValue(mvcResult.getResponse().getContentAsByteArray(), RoomDTO.class);
+    }
+
+    record ClusterNode(ConsistentHashRoomRegistry roomRegistry, RoomService roomService, MockMvc mockMvc) {
+    }
+}
@@ -0,0 +1,596 @@
+package ru.loolzaaa.games.vuegamingroomjavaserver;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.sun.management.GcInfo;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.dto.RoomDTO;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.pojo.Game;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.pojo.Member;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service.GameService;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.websocket.WebSocketEventProcessor;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * End-to-end load of a server on a random local port: rooms are created and joined through REST,
+ * every member opens a websocket connection and sends a configurable mix of messages.
+ * <p>
+ * Excluded from the default build, run with {@code mvn test -Pload} and {@code -Dload.*} parameters.
+ * The same load is run once for every room execution mode of {@code load.modes},
+ * other server properties are applied as usual. After the fixed load every mode is ramped:
+ * rooms are added step by step until p99 latency or error rate of a step exceeds the threshold,
+ * the last passed step gives the maximum sustained connections count of the mode.
+ */
+@Tag("load")
+class LoadHarnessTests {
+
+    private static final Logger log = LogManager.getLogger(LoadHarnessTests.class);
+
+    private static final int ROOMS = Integer.getInteger("load.rooms", 50);
+    private static final int CLIENTS_PER_ROOM = Integer.getInteger("load.clients-per-room", 4);
+    private static final int DURATION_SECONDS = Integer.getInteger("load.duration", 20);
+    /**
+     * Messages per second sent by every client.
+     */
+    private static final int RATE = Integer.getInteger("load.rate", 10);
+    /**
+     * Weights of client actions: PING, custom game event (fanned out to the room) and member color change through REST.
+     */
+    private static final String MIX = System.getProperty("load.mix", "ping:30,event:60,members:10");
+    /**
+     * Room execution modes to compare, each one is run with a new server.
+     */
+    private static final String MODES = System.getProperty("load.modes", "INLINE,VIRTUAL,SHARDED");
+    /**
+     * Rooms added on every ramp step, zero disables the ramp.
+     */
+    private static final int RAMP_STEP_ROOMS = Integer.getInteger("load.ramp.step-rooms", 25);
+    private static final int RAMP_STEP_SECONDS = Integer.getInteger("load.ramp.step-duration", 5);
+    private static final int RAMP_MAX_CLIENTS = Integer.getInteger("load.ramp.max-clients", 10_000);
+    /**
+     * The step fails when p99 of fan-out latency or ping round trip exceeds this value.
+     */
+    private static final long RAMP_MAX_P99_MILLIS = Long.getLong("load.ramp.max-p99", 100);
+    /**
+     * The step fails when this share of client actions fails.
+     */
+    private static final double RAMP_MAX_ERROR_RATE = Double.parseDouble(System.getProperty("load.ramp.max-error-rate", "0.01"));
+
+    private static final String LOAD_EVENT = "LOAD";
+    private static final String TICK_EVENT = "TICK";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+
+    // Замеры текущего прогона, создаются заново для каждого режима
+    private LatencyHistogram fanOutLatency;
+    private LatencyHistogram pingLatency;
+    private Map<String, LongAdder> sentCounters;
+    private LongAdder receivedCounter;
+    private LongAdder errorCounter;
+
+    private String baseUrl;
+
+    @Test
+    void load() throws Exception {
+        Map<String, Integer> mix = parseMix(MIX);
+        Map<String, String> comparison = new LinkedHashMap<>();
+        for (String mode : MODES.split(",")) {
+            mode = mode.trim();
+            run(mode, mix);
+            String result = String.format("fan-out p99 %.3f ms, ping p99 %.3f ms, received %.0f msg/s",
+                    fanOutLatency.percentile(0.99) / 1e6, pingLatency.percentile(0.99) / 1e6,
+                    receivedCounter.sum() / (double) DURATION_SECONDS);
+            if (RAMP_STEP_ROOMS > 0) {
+                result += String.format(", max sustained %d connections", ramp(mode, mix));
+            }
+            comparison.put(mode, result);
+        }
+        StringBuilder report = new StringBuilder("\n=== Execution modes ===\n");
+        comparison.forEach((mode, result) -> report.append(String.format("%-8s %s%n", mode, result)));
+        log.info(report);
+    }
+
+    private void run(String mode, Map<String, Integer> mix) throws Exception {
+        resetMeasurements(mix);
+
+        try (ConfigurableApplicationContext context = startServer(mode)) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+
+            List<LoadClient> clients = connectClients(port, 0, ROOMS);
+            assertEquals(ROOMS * CLIENTS_PER_ROOM, clients.size());
+
+            ScheduledExecutorService scheduler = newClientScheduler();
+            long elapsed;
+            long allocated;
+            try (HeapAllocationCounter allocationCounter = new HeapAllocationCounter()) {
+                long start = System.nanoTime();
+                schedule(scheduler, clients, mix);
+                TimeUnit.SECONDS.sleep(DURATION_SECONDS);
+                scheduler.shutdownNow();
+                scheduler.awaitTermination(5, TimeUnit.SECONDS);
+                elapsed = System.nanoTime() - start;
+                allocated = allocationCounter.allocatedBytes();
+            }
+            // Дождаться доставки отправленных сообщений
+            TimeUnit.SECONDS.sleep(1);
+
+            report(mode, clients.size(), elapsed, allocated);
+            for (LoadClient client : clients) {
+                client.session.close();
+            }
+            assertTrue(receivedCounter.sum() > 0);
+        }
+    }
+
+    /**
+     * Adds rooms to the running server until a step fails the latency or error threshold,
+     * or a connection can't be opened.
+     *
+     * @return clients count of the last passed step
+     */
+    private int ramp(String mode, Map<String, Integer> mix) throws Exception {
+        try (ConfigurableApplicationContext context = startServer(mode)) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            ScheduledExecutorService scheduler = newClientScheduler();
+            List<LoadClient> clients = new ArrayList<>();
+            int sustained = 0;
+            try {
+                while (clients.size() + RAMP_STEP_ROOMS * CLIENTS_PER_ROOM <= RAMP_MAX_CLIENTS) {
+                    List<LoadClient> added;
+                    try {
+                        added = connectClients(port, clients.size() / CLIENTS_PER_ROOM, RAMP_STEP_ROOMS);
+                    } catch (Exception e) {
+                        log.info("Ramp {}: connection failed after {} clients: {}", mode, clients.size(), e.toString());
+                        break;
+                    }
+                    clients.addAll(added);
+                    resetMeasurements(mix);
+                    schedule(scheduler, added, mix);
+                    TimeUnit.SECONDS.sleep(RAMP_STEP_SECONDS);
+
+                    long p99 = Math.max(fanOutLatency.percentile(0.99), pingLatency.percentile(0.99));
+                    long sent = sentCounters.values().stream().mapToLong(LongAdder::sum).sum();
+                    long errors = errorCounter.sum();
+                    double errorRate = sent + errors == 0 ? 0 : errors / (double) (sent + errors);
+                    boolean passed = p99 <= TimeUnit.MILLISECONDS.toNanos(RAMP_MAX_P99_MILLIS) && errorRate <= RAMP_MAX_ERROR_RATE;
+                    log.info(String.format("Ramp %s: %d clients, p99 %.3f ms, errors %.2f%%, %s",
+                            mode, clients.size(), p99 / 1e6, errorRate * 100, passed ? "passed" : "failed"));
+                    if (!passed) {
+                        break;
+                    }
+                    sustained = clients.size();
+                }
+            } finally {
+                scheduler.shutdownNow();
+                scheduler.awaitTermination(5, TimeUnit.SECONDS);
+                for (LoadClient client : clients) {
+                    client.session.close();
+                }
+            }
+            return sustained;
+        }
+    }
+
+    private ConfigurableApplicationContext startServer(String mode) {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(LoadTestApplication.class)
+                // Трассировка сервера из logback-test.xml исказит замеры
+                .properties("server.port=0", "logging.level.ru.loolzaaa.games.vuegamingroomjavaserver.javaserver=warn",
+                        "java-server.execution.mode=" + mode)
+                .run();
+        baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+        return context;
+    }
+
+    private void resetMeasurements(Map<String, Integer> mix) {
+        fanOutLatency = new LatencyHistogram();
+        pingLatency = new LatencyHistogram();
+        sentCounters = new LinkedHashMap<>();
+        receivedCounter = new LongAdder();
+        errorCounter = new LongAdder();
+        mix.keySet().forEach(action -> sentCounters.put(action, new LongAdder()));
+    }
+
+    private static ScheduledExecutorService newClientScheduler() {
+        return Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+            Thread thread = new Thread(r, "load-client");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static void schedule(ScheduledExecutorService scheduler, List<LoadClient> clients, Map<String, Integer> mix) {
+        long periodNanos = TimeUnit.SECONDS.toNanos(1) / RATE;
+        for (LoadClient client : clients) {
+            long initialDelay = ThreadLocalRandom.current().nextLong(periodNanos);
+            scheduler.scheduleAtFixedRate(() -> client.act(mix), initialDelay, periodNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private List<LoadClient> connectClients(int port, int firstRoom, int roomsCount) throws Exception {
+        StandardWebSocketClient webSocketClient = new StandardWebSocketClient();
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<List<LoadClient>>> rooms = new ArrayList<>(roomsCount);
+            for (int i = firstRoom; i < firstRoom + roomsCount; i++) {
+                int roomIndex = i;
+                rooms.add(executor.submit(() -> {
+                    List<LoadClient> roomClients = new ArrayList<>(CLIENTS_PER_ROOM);
+                    RoomDTO room = post("/room/create?nickname=owner-" + roomIndex);
+                    roomClients.add(new LoadClient(room.getCode(), room.getUserId()));
+                    for (int j = 1; j < CLIENTS_PER_ROOM; j++) {
+                        RoomDTO member = post("/room/join/" + room.getCode() + "?nickname=member-" + j);
+                        roomClients.add(new LoadClient(room.getCode(), member.getUserId()));
+                    }
+                    for (LoadClient client : roomClients) {
+                        URI uri = URI.create("ws://localhost:" + port + "/game-ws?token=" + client.userId + ":" + room.getWsToken());
+                        client.session = webSocketClient.execute(client, new WebSocketHttpHeaders(), uri).get(10, TimeUnit.SECONDS);
+                    }
+                    return roomClients;
+                }));
+            }
+            List<LoadClient> clients = new ArrayList<>(roomsCount * CLIENTS_PER_ROOM);
+            for (Future<List<LoadClient>> room : rooms) {
+                clients.addAll(room.get());
+            }
+            return clients;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private RoomDTO post(String path) throws Exception {
+        HttpResponse<byte[]> response = httpClient.send(
+                HttpRequest.newBuilder(URI.create(baseUrl + path)).POST(HttpRequest.BodyPublishers.noBody()).build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        assertEquals(200, response.statusCode(), () -> new String(response.body()));
+        return mapper.readValue(response.body(), RoomDTO.class);
+    }
+
+    private void report(String mode, int clientsCount, long elapsedNanos, long allocatedBytes) {
+        double seconds = elapsedNanos / 1e9;
+        long sent = sentCounters.values().stream().mapToLong(LongAdder::sum).sum();
+        StringBuilder report = new StringBuilder("\n=== Load report: " + mode + " ===\n");
+        report.append(String.format("Rooms: %d, clients: %d, duration: %.1f s, mix: %s%n", ROOMS, clientsCount, seconds, MIX));
+        report.append(String.format("Sent: %.0f msg/s", sent / seconds));
+        sentCounters.forEach((action, counter) -> report.append(String.format(", %s %.0f/s", action, counter.sum() / seconds)));
+        report.append(String.format("%nReceived: %.0f msg/s, errors: %d%n", receivedCounter.sum() / seconds, errorCounter.sum()));
+        report.append("Fan-out latency: ").append(fanOutLatency).append('\n');
+        report.append("Ping round trip: ").append(pingLatency).append('\n');
+        report.append(String.format("Allocation rate (server and clients): %.1f MB/s%n", allocatedBytes / seconds / (1024 * 1024)));
+        log.info(report);
+    }
+
+    private static Map<String, Integer> parseMix(String mix) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String part : mix.split(",")) {
+            String[] weight = part.trim().split(":");
+            weights.put(weight[0], Integer.parseInt(weight[1]));
+        }
+        return weights;
+    }
+
+    private class LoadClient extends TextWebSocketHandler {
+
+        final String code;
+        final String userId;
+        final Queue<Long> pings = new ConcurrentLinkedQueue<>();
+        volatile WebSocketSession session;
+
+        LoadClient(String code, String userId) {
+            this.code = code;
+            this.userId = userId;
+        }
+
+        void act(Map<String, Integer> mix) {
+            int total = mix.values().stream().mapToInt(Integer::intValue).sum();
+            int choice = ThreadLocalRandom.current().nextInt(total);
+            String action = null;
+            for (Map.Entry<String, Integer> weight : mix.entrySet()) {
+                action = weight.getKey();
+                choice -= weight.getValue();
+                if (choice < 0) {
+                    break;
+                }
+            }
+            try {
+                switch (action) {
+                    case "ping" -> {
+                        pings.add(System.nanoTime());
+                        session.sendMessage(new TextMessage("{\"event\":\"PING\"}"));
+                    }
+                    case "event" -> session.sendMessage(new TextMessage("{\"event\":\"" + LOAD_EVENT + "\",\"code\":\"" + code
+                            + "\",\"data\":{\"sentAt\":" + System.nanoTime() + "}}"));
+                    case "members" -> httpClient.sendAsync(HttpRequest.newBuilder(URI.create(baseUrl + "/room/" + code + "/" + userId
+                                            + "/color?newColor=%23" + String.format("%06x", ThreadLocalRandom.current().nextInt(0xffffff))))
+                                    .POST(HttpRequest.BodyPublishers.noBody()).build(),
+                            HttpResponse.BodyHandlers.discarding()).whenComplete((response, e) -> {
+                        if (e != null || response.statusCode() / 100 != 2) {
+                            errorCounter.increment();
+                        }
+                    });
+                    default -> throw new IllegalArgumentException("Unknown load action: " + action);
+                }
+                sentCounters.get(action).increment();
+            } catch (Exception e) {
+                // Отправка в закрытую сессию в конце прогона тоже считается, но уже не влияет на отчет
+                errorCounter.increment();
+            }
+        }
+
+        @Override
+        protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+            long receivedAt = System.nanoTime();
+            receivedCounter.increment();
+            String payload = message.getPayload();
+            if (payload.contains("\"PONG\"")) {
+                Long sentAt = pings.poll();
+                if (sentAt != null) {
+                    pingLatency.record(receivedAt - sentAt);
+                }
+            } else if (payload.contains("\"" + TICK_EVENT + "\"")) {
+                fanOutLatency.record(receivedAt - mapper.readTree(payload).path("data").path("sentAt").asLong());
+            }
+        }
+    }
+
+    /**
+     * Bytes allocated in the heap since creation by all threads, including virtual threads
+     * and threads that have already exited: growth of used heap plus bytes freed by every garbage collection.
+     */
+    static class HeapAllocationCounter implements NotificationListener, AutoCloseable {
+
+        private final Set<String> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .map(MemoryPoolMXBean::getName)
+                .collect(Collectors.toSet());
+
+        private final LongAdder collectedBytes = new LongAdder();
+
+        private final long heapUsedAtStart;
+
+        HeapAllocationCounter() {
+            // Сборка до начала замера, чтобы мусор прогрева не попал в освобожденные байты
+            System.gc();
+            heapUsedAtStart = heapUsed();
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                ((NotificationEmitter) collector).addNotificationListener(this, null, null);
+            }
+        }
+
+        long allocatedBytes() {
+            return heapUsed() - heapUsedAtStart + collectedBytes.sum();
+        }
+
+        @Override
+        public void handleNotification(Notification notification, Object handback) {
+            if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                return;
+            }
+            GcInfo gcInfo = GarbageCollectionNotificationInfo
+                    .from((CompositeData) notification.getUserData()).getGcInfo();
+            collectedBytes.add(used(gcInfo.getMemoryUsageBeforeGc()) - used(gcInfo.getMemoryUsageAfterGc()));
+        }
+
+        @Override
+        public void close() throws Exception {
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                ((NotificationEmitter) collector).removeNotificationListener(this);
+            }
+        }
+
+        private long used(Map<String, MemoryUsage> usageByPool) {
+            // Перенос между пулами (например, из eden в old) не является освобождением
+            return usageByPool.entrySet().stream()
+                    .filter(pool -> heapPools.contains(pool.getKey()))
+                    .mapToLong(pool -> pool.getValue().getUsed())
+                    .sum();
+        }
+
+        private long heapUsed() {
+            return ManagementFactory.getMemoryPoolMXBeans().stream()
+                    .filter(pool -> heapPools.contains(pool.getName()))
+                    .mapToLong(pool -> pool.getUsage().getUsed())
+                    .sum();
+        }
+    }
+
+    /**
+     * Log-linear histogram of nanosecond values with about 3% precision.
+     */
+    static class LatencyHistogram {
+
+        private static final int SUB_BUCKETS = 32;
+
+        private final AtomicLongArray counts = new AtomicLongArray(64 * SUB_BUCKETS);
+
+        void record(long nanos) {
+            counts.incrementAndGet(index(Math.max(nanos, 0)));
+        }
+
+        long percentile(double percentile) {
+            long total = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                total += counts.get(i);
+            }
+            long target = (long) Math.ceil(percentile * total);
+            long cumulative = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                cumulative += counts.get(i);
+                if (cumulative >= target && cumulative > 0) {
+                    return lowerBound(i);
+                }
+            }
+            return 0;
+        }
+
+        private static int index(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int subBucket = (int) (value >>> (exponent - 5)) & (SUB_BUCKETS - 1);
+            return (exponent - 4) * SUB_BUCKETS + subBucket;
+        }
+
+        private static long lowerBound(int index) {
+            if (index < SUB_BUCKETS) {
+                return index;
+            }
+            int exponent = index / SUB_BUCKETS + 4;
+            return (long) (SUB_BUCKETS + index % SUB_BUCKETS) << (exponent - 5);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("p50 %.3f ms, p99 %.3f ms, p999 %.3f ms",
+                    percentile(0.5) / 1e6, percentile(0.99) / 1e6, percentile(0.999) / 1e6);
+        }
+    }
+
+    /**
+     * Server with a game that broadcasts every incoming custom event to the whole room.
+     */
+    @SpringBootConfiguration
+    @EnableAutoConfiguration
+    static class LoadTestApplication {
+
+        @Bean
+        GameService<LoadGame> gameService() {
+            return new GameService<>() {
+                @Override
+                public String getGameName() {
+                    return LoadGame.NAME;
+                }
+
+                @Override
+                public LoadGame createGameInstance() {
+                    return new LoadGame();
+                }
+
+                @Override
+                public void startNewGame(Game g, List<Member> members) {
+                }
+            };
+        }
+
+        @Bean
+        WebSocketEventProcessor webSocketEventProcessor(ObjectMapper mapper) {
+            return new WebSocketEventProcessor() {
+                @Override
+                public JsonNode createGameState(Game g, String userId) {
+                    return null;
+                }
+
+                @Override
+                public void updateGameSettings(JsonNode settingsNode, Game g, Consumer<JsonNode> sendMessage, Consumer<String> callbackEvent) {
+                }
+
+                @Override
+                public JsonNode startGame(Game g, String userId) {
+                    return null;
+                }
+
+                @Override
+                public JsonNode restartGame(Game g, String userId) {
+                    return null;
+                }
+
+                @Override
+                public void incomingEvent(ObjectNode eventNode, Game g, String userId, Consumer<JsonNode> sendMessage, Consumer<String> callbackEvent) {
+                    ((LoadGame) g).sentAt = eventNode.path(DATA_PROPERTY_NAME).path("sentAt").asLong();
+                    callbackEvent.accept(TICK_EVENT);
+                }
+
+                @Override
+                public ObjectNode outgoingEvent(String event, Game g, String userId) {
+                    ObjectNode eventNode = mapper.createObjectNode();
+                    eventNode.put(EVENT_PROPERTY_NAME, event);
+                    eventNode.putObject(DATA_PROPERTY_NAME).put("sentAt", ((LoadGame) g).sentAt);
+                    return eventNode;
+                }
+
+                @Override
+                public boolean isOutgoingEventShared(String event, Game g) {
+                    return TICK_EVENT.equals(event);
+                }
+
+                @Override
+                public JsonNode processEventError(Exception e) {
+                    return mapper.getNodeFactory().textNode(String.valueOf(e.getMessage()));
+                }
+            };
+        }
+    }
+
+    static class LoadGame implements Game {
+
+        static final String NAME = "LOAD";
+
+        volatile long sentAt;
+
+        @Override
+        public String getName() {
+            return NAME;
+        }
+
+        @Override
+        public int getMinPlayers() {
+            return 1;
+        }
+
+        @Override
+        public int getMaxPlayers() {
+            return 200;
+        }
+    }
+}
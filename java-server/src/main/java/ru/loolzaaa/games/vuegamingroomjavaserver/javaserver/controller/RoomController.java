@@ -1,17 +1,25 @@
 package ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.controller;
 
-import lombok.RequiredArgsConstructor;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.dto.MemberChangeDTO;
 import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.dto.RoomDTO;
 import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.exception.RoomException;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.exception.RoomOwnerException;
 import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.pojo.Member;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.pojo.Room;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service.RoomExecutionMode;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service.RoomExecutor;
 import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service.RoomService;
 import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.websocket.GameWebSocketHandler;
 
 import java.util.List;
+import java.util.function.Supplier;
 
-@RequiredArgsConstructor
 @RestController
 @RequestMapping("/room")
 public class RoomController {
@@ -20,6 +28,18 @@ public class RoomController {
 
     private final RoomService roomService;
 
+    private final RoomExecutor roomExecutor;
+
+    public RoomController(GameWebSocketHandler gameWebSocketHandler, RoomService roomService) {
+        this(gameWebSocketHandler, roomService, new RoomExecutor(RoomExecutionMode.INLINE));
+    }
+
+    public RoomController(GameWebSocketHandler gameWebSocketHandler, RoomService roomService, RoomExecutor roomExecutor) {
+        this.gameWebSocketHandler = gameWebSocketHandler;
+        this.roomService = roomService;
+        this.roomExecutor = roomExecutor;
+    }
+
     @PostMapping(path = "/create", produces = "application/json")
     public RoomDTO createRoom(@RequestParam(value = "userId", required = false) String userId,
                               @RequestParam("nickname") String nickname) {
@@ -32,9 +52,11 @@ public class RoomController {
     public RoomDTO joinToRoom(@PathVariable("code") String code,
                               @RequestParam(value = "userId", required = false) String userId,
                               @RequestParam("nickname") String nickname) {
-        RoomDTO roomDTO = roomService.joinToRoom(code, userId, nickname);
-        gameWebSocketHandler.sendEvent(code, GameWebSocketHandler.UPDATE_MEMBERS);
-        return roomDTO;
+        return inRoom(code, () -> {
+            RoomDTO roomDTO = roomService.joinToRoom(code, userId, nickname);
+            gameWebSocketHandler.sendEvent(code, GameWebSocketHandler.UPDATE_MEMBERS);
+            return roomDTO;
+        });
     }
 
     @ResponseStatus(HttpStatus.NO_CONTENT)
@@ -42,8 +64,10 @@ public class RoomController {
     public void changeMemberNickname(@PathVariable("code") String code,
                                      @PathVariable("userId") String userId,
                                      @RequestParam("newNickname") String newNickname) {
-        roomService.changeMemberNickname(code, userId, newNickname);
-        gameWebSocketHandler.sendEvent(code, GameWebSocketHandler.UPDATE_MEMBERS);
+        inRoom(code, () -> {
+            roomService.changeMemberNickname(code, userId, newNickname);
+            gameWebSocketHandler.sendEvent(code, GameWebSocketHandler.UPDATE_MEMBERS);
+        });
     }
 
     @ResponseStatus(HttpStatus.NO_CONTENT)
@@ -51,8 +75,10 @@ public class RoomController {
     public void changeMemberColor(@PathVariable("code") String code,
                                   @PathVariable("userId") String userId,
                                   @RequestParam("newColor") String newColor) {
-        roomService.changeMemberColor(code, userId, newColor);
-        gameWebSocketHandler.sendEvent(code, GameWebSocketHandler.UPDATE_MEMBERS);
+        inRoom(code, () -> {
+            roomService.changeMemberColor(code, userId, newColor);
+            gameWebSocketHandler.sendEvent(code, GameWebSocketHandler.UPDATE_MEMBERS);
+        });
     }
 
     @ResponseStatus(HttpStatus.NO_CONTENT)
@@ -60,8 +86,10 @@ public class RoomController {
     public void changeMemberPlayerStatus(@PathVariable("code") String code,
                                          @PathVariable("userId") String userId,
                                          @RequestParam("newStatus") boolean newStatus) {
-        roomService.changeMemberPlayerStatus(code, userId, newStatus);
-        gameWebSocketHandler.sendEvent(code, GameWebSocketHandler.UPDATE_MEMBERS);
+        inRoom(code, () -> {
+            roomService.changeMemberPlayerStatus(code, userId, newStatus);
+            gameWebSocketHandler.sendEvent(code, GameWebSocketHandler.UPDATE_MEMBERS);
+        });
     }
 
     @ResponseStatus(HttpStatus.NO_CONTENT)
@@ -69,8 +97,23 @@ public class RoomController {
     public void changeMemberReadyStatus(@PathVariable("code") String code,
                                         @PathVariable("userId") String userId,
                                         @RequestParam("newStatus") boolean newStatus) {
-        roomService.changeMemberReadyStatus(code, userId, newStatus);
-        gameWebSocketHandler.sendEvent(code, GameWebSocketHandler.UPDATE_MEMBERS);
+        inRoom(code, () -> {
+            roomService.changeMemberReadyStatus(code, userId, newStatus);
+            gameWebSocketHandler.sendEvent(code, GameWebSocketHandler.UPDATE_MEMBERS);
+        });
+    }
+
+    /**
+     * Applies changes of several members at once, with a single members update for the room.
+     */
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    @PostMapping(path = "/{code}/members", consumes = "application/json")
+    public void changeMembers(@PathVariable("code") String code,
+                              @RequestBody List<MemberChangeDTO> changes) {
+        inRoom(code, () -> {
+            roomService.changeMembers(code, changes);
+            gameWebSocketHandler.sendEvent(code, GameWebSocketHandler.UPDATE_MEMBERS);
+        });
     }
 
     @ResponseStatus(HttpStatus.NO_CONTENT)
@@ -78,19 +121,24 @@ public class RoomController {
     public void startGame(@PathVariable("code") String code,
                           @RequestParam("userId") String userId,
                           @RequestParam("forceStart") boolean forceStart) {
-        roomService.startGame(code, userId, forceStart);
-        gameWebSocketHandler.sendEvent(code, GameWebSocketHandler.UPDATE_MEMBERS);
-        gameWebSocketHandler.sendEvent(code, GameWebSocketHandler.START_GAME);
+        inRoom(code, () -> {
+            roomService.startGame(code, userId, forceStart);
+            gameWebSocketHandler.sendEvent(code, GameWebSocketHandler.UPDATE_MEMBERS);
+            gameWebSocketHandler.sendEvent(code, GameWebSocketHandler.START_GAME);
+        });
     }
 
     @ResponseStatus(HttpStatus.NO_CONTENT)
     @PostMapping("/{code}/restart")
     public void restartGame(@PathVariable("code") String code,
                             @RequestParam("userId") String userId) {
-        gameWebSocketHandler.sendEvent(code, GameWebSocketHandler.RESTART_GAME);
-        roomService.startGame(code, userId, true);
-        gameWebSocketHandler.sendEvent(code, GameWebSocketHandler.UPDATE_MEMBERS);
-        gameWebSocketHandler.sendEvent(code, GameWebSocketHandler.START_GAME);
+        // Перезапуск и новый старт выполняются одной задачей комнаты, без чередования с другими
+        inRoom(code, () -> {
+            gameWebSocketHandler.sendEvent(code, GameWebSocketHandler.RESTART_GAME);
+            roomService.startGame(code, userId, true);
+            gameWebSocketHandler.sendEvent(code, GameWebSocketHandler.UPDATE_MEMBERS);
+            gameWebSocketHandler.sendEvent(code, GameWebSocketHandler.START_GAME);
+        });
     }
 
     @GetMapping("/{code}/spectators")
@@ -98,6 +146,32 @@ public class RoomController {
         return roomService.getAllSpectators(code);
     }
 
+    private void inRoom(String code, Runnable action) {
+        inRoom(code, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    private <T> T inRoom(String code, Supplier<T> action) {
+        Room<?> room = roomService.getRooms().get(code);
+        // Об отсутствии комнаты сообщит сам сервис
+        return room != null ? roomExecutor.call(room, action) : action.get();
+    }
+
+    /**
+     * Redirects request for a room hosted by another node to that node.
+     */
+    @ExceptionHandler(RoomOwnerException.class)
+    public ResponseEntity<String> roomOwnerError(RoomOwnerException e, HttpServletRequest request) {
+        String location = e.getOwner() + request.getRequestURI()
+                + (request.getQueryString() != null ? "?" + request.getQueryString() : "");
+        return ResponseEntity.status(HttpStatus.TEMPORARY_REDIRECT)
+                .header(HttpHeaders.LOCATION, location)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body("{\"message\":\"%s\",\"owner\":\"%s\"}".formatted(e.getLocalizedMessage(), e.getOwner()));
+    }
+
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     @ExceptionHandler(RoomException.class)
     public String roomError(RoomException e) {
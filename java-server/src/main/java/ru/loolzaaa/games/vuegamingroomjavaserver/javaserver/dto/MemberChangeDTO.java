@@ -0,0 +1,21 @@
+package ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Change of one room member in a batch, {@code null} fields are not changed.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class MemberChangeDTO {
+    private String userId;
+    private String nickname;
+    private String color;
+    private Boolean player;
+    private Boolean ready;
+}
@@ -0,0 +1,20 @@
+package ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.exception;
+
+import lombok.Getter;
+
+/**
+ * Room is hosted by another server node.
+ */
+@Getter
+public class RoomOwnerException extends RoomException {
+
+    private final String code;
+
+    private final String owner;
+
+    public RoomOwnerException(String code, String owner) {
+        super("The room is hosted by another node");
+        this.code = code;
+        this.owner = owner;
+    }
+}
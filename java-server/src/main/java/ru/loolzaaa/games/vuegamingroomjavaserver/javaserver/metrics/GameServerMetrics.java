@@ -0,0 +1,75 @@
+package ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.metrics;
+
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service.RoomService;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.websocket.GameWebSocketHandler;
+
+/**
+ * Instrumentation of rooms, sessions and event pipeline.
+ * <p>
+ * Methods are called on hot paths for every message, so implementations
+ * must not block and should not allocate. All durations are in nanoseconds.
+ */
+public interface GameServerMetrics {
+
+    GameServerMetrics NOOP = new GameServerMetrics() {
+    };
+
+    /**
+     * Called once when the server is assembled, so gauges of its state can be registered.
+     */
+    default void bind(RoomService roomService, GameWebSocketHandler gameWebSocketHandler) {
+    }
+
+    /**
+     * Incoming websocket message was parsed and processed.
+     */
+    default void messageReceived(int bytes, long nanos) {
+    }
+
+    /**
+     * Outgoing websocket message was written to the session.
+     */
+    default void messageSent(int bytes, long nanos) {
+    }
+
+    /**
+     * Room event was created and enqueued for all sessions of the room.
+     */
+    default void eventSent(String event, long nanos) {
+    }
+
+    /**
+     * Call of {@link ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.websocket.WebSocketEventProcessor} method.
+     */
+    default void processorCallback(String callback, long nanos) {
+    }
+
+    /**
+     * ERROR event was sent to a client because of event processing error.
+     */
+    default void errorSent() {
+    }
+
+    /**
+     * Incoming message exceeded the rate limit.
+     *
+     * @param limit {@code session} or {@code room}
+     */
+    default void messageThrottled(String limit) {
+    }
+
+    /**
+     * Game tick of a room was executed.
+     */
+    default void tickCompleted(long nanos) {
+    }
+
+    /**
+     * Game ticks were skipped, because timer thread or room didn't keep up with the tick rate.
+     */
+    default void ticksOverrun(int count) {
+    }
+
+    default void roomsEvicted(int count) {
+    }
+}
@@ -0,0 +1,120 @@
+package ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.metrics;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.pojo.Game;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.websocket.WebSocketEventProcessor;
+
+import java.util.function.Consumer;
+
+/**
+ * Event processor that reports duration of every callback of the delegate to {@link GameServerMetrics}.
+ */
+public class MeteredWebSocketEventProcessor implements WebSocketEventProcessor {
+
+    private final WebSocketEventProcessor delegate;
+
+    private final GameServerMetrics metrics;
+
+    public MeteredWebSocketEventProcessor(WebSocketEventProcessor delegate, GameServerMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public JsonNode createGameState(Game g, String userId) {
+        long start = System.nanoTime();
+        try {
+            return delegate.createGameState(g, userId);
+        } finally {
+            metrics.processorCallback("createGameState", System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void updateGameSettings(JsonNode settingsNode, Game g, Consumer<JsonNode> sendMessage, Consumer<String> callbackEvent) {
+        long start = System.nanoTime();
+        try {
+            delegate.updateGameSettings(settingsNode, g, sendMessage, callbackEvent);
+        } finally {
+            metrics.processorCallback("updateGameSettings", System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public JsonNode startGame(Game g, String userId) {
+        long start = System.nanoTime();
+        try {
+            return delegate.startGame(g, userId);
+        } finally {
+            metrics.processorCallback("startGame", System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public JsonNode restartGame(Game g, String userId) {
+        long start = System.nanoTime();
+        try {
+            return delegate.restartGame(g, userId);
+        } finally {
+            metrics.processorCallback("restartGame", System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void registerIncomingEvents(IncomingEventRegistry registry) {
+        delegate.registerIncomingEvents(new IncomingEventRegistry() {
+            @Override
+            public <T> void register(String event, Class<T> payloadType, IncomingEventHandler<T> handler) {
+                registry.register(event, payloadType, (payload, g, userId, sendMessage, callbackEvent) -> {
+                    long start = System.nanoTime();
+                    try {
+                        handler.handle(payload, g, userId, sendMessage, callbackEvent);
+                    } finally {
+                        metrics.processorCallback("incomingEvent", System.nanoTime() - start);
+                    }
+                });
+            }
+        });
+    }
+
+    @Override
+    public void incomingEvent(ObjectNode eventNode, Game g, String userId, Consumer<JsonNode> sendMessage, Consumer<String> callbackEvent) {
+        long start = System.nanoTime();
+        try {
+            delegate.incomingEvent(eventNode, g, userId, sendMessage, callbackEvent);
+        } finally {
+            metrics.processorCallback("incomingEvent", System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public ObjectNode outgoingEvent(String event, Game g, String userId) {
+        long start = System.nanoTime();
+        try {
+            return delegate.outgoingEvent(event, g, userId);
+        } finally {
+            metrics.processorCallback("outgoingEvent", System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public boolean isGameStateShared(Game g) {
+        return delegate.isGameStateShared(g);
+    }
+
+    @Override
+    public String getViewKey(Game g, String userId) {
+        return delegate.getViewKey(g, userId);
+    }
+
+    @Override
+    public boolean isOutgoingEventShared(String event, Game g) {
+        return delegate.isOutgoingEventShared(event, g);
+    }
+
+    @Override
+    public JsonNode processEventError(Exception e) {
+        return delegate.processEventError(e);
+    }
+}
@@ -1,29 +1,47 @@
 package ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.pojo;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AccessLevel;
 import lombok.Getter;
+import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.ToString;
 
+/**
+ * Room member. User id, nickname, player and ready statuses are indexed by the room,
+ * so they can be changed only through {@link Room} methods (or {@code RoomService} outside of the package).
+ */
 @ToString
 @Getter
 @Setter
+@NoArgsConstructor
 public class Member {
+    @Setter(AccessLevel.PACKAGE)
+    private int id;
     @JsonIgnore
+    @Setter(AccessLevel.PACKAGE)
     private String userId;
+    @Setter(AccessLevel.PACKAGE)
     private String nickname;
     private String color;
     private boolean isAdmin;
     private boolean isPlayer;
-    private boolean isSpectator;
+    private boolean isSpectator = true;
+    @Setter(AccessLevel.PACKAGE)
     private boolean isReady;
 
-    public void setPlayer(boolean isPlayer) {
+    public Member(String userId, String nickname, String color) {
+        this.userId = userId;
+        this.nickname = nickname;
+        this.color = color;
+    }
+
+    void setPlayer(boolean isPlayer) {
         this.isPlayer = isPlayer;
         this.isSpectator = !isPlayer;
     }
 
-    public void setSpectator(boolean isSpectator) {
+    void setSpectator(boolean isSpectator) {
         this.isPlayer = !isSpectator;
         this.isSpectator = isSpectator;
     }
@@ -1,38 +1,187 @@
 package ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.pojo;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service.RoomExecutor;
 
-import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Room with members and game.
+ * <p>
+ * Members are indexed by user id and nickname, and players/spectators/ready members are counted,
+ * so all member changes must go through room methods to keep indexes consistent.
+ * Reads are lock-free, changes are serialized by the room monitor.
+ */
 @Getter
 public class Room<G extends Game> {
 
     @Setter
     private String code;
     private final String webSocketToken;
+    @Getter(AccessLevel.NONE)
     private final List<Member> members = new CopyOnWriteArrayList<>();
+    @Getter(AccessLevel.NONE)
+    private final List<Member> membersView = Collections.unmodifiableList(members);
+    @Getter(AccessLevel.NONE)
+    private final Map<String, Member> membersByUserId = new ConcurrentHashMap<>();
+    @Getter(AccessLevel.NONE)
+    private final Map<String, Member> membersByNickname = new ConcurrentHashMap<>();
+    @Getter(AccessLevel.NONE)
+    private final AtomicInteger memberIdSequence = new AtomicInteger();
+    private volatile int playersCount;
+    private volatile int spectatorsCount;
+    private volatile int readyCount;
     private final G game;
     @Setter
     private boolean gameStarted;
-    @Setter
-    private LocalDateTime lastActivity;
+    private final RoomExecutor.Mailbox mailbox = new RoomExecutor.Mailbox();
+    /**
+     * {@link System#nanoTime()} of the last activity in the room.
+     */
+    private volatile long lastActivity;
+    /**
+     * Revision of the room state for snapshots: changes with every activity, member change
+     * and game tick that changed the game. Unlike last activity, it doesn't extend the room TTL.
+     */
+    @Getter(AccessLevel.NONE)
+    private final AtomicLong stateRevision = new AtomicLong();
 
     public Room(String code, String webSocketToken, G game) {
         this.code = code;
         this.webSocketToken = webSocketToken;
-        this.lastActivity = LocalDateTime.now();
+        this.lastActivity = System.nanoTime();
         this.game = game;
     }
 
+    public void updateLastActivity() {
+        lastActivity = System.nanoTime();
+        markChanged();
+    }
+
+    public long getStateRevision() {
+        return stateRevision.get();
+    }
+
+    /**
+     * Marks room state as changed without room activity, for example by a game tick.
+     */
+    public void markChanged() {
+        stateRevision.incrementAndGet();
+    }
+
+    /**
+     * Returns unmodifiable view of room members in join order.
+     */
+    public List<Member> getMembers() {
+        return membersView;
+    }
+
     public Member getMemberByUserId(String userId) {
-        return members.stream()
-                .filter(m -> m.getUserId().equals(userId))
-                .findFirst()
-                .orElse(null);
+        return userId != null ? membersByUserId.get(userId) : null;
+    }
+
+    public Member getMemberByNickname(String nickname) {
+        return nickname != null ? membersByNickname.get(nickname) : null;
+    }
+
+    /**
+     * Adds new member to the room.
+     *
+     * @return {@code false} if member with the same user id or nickname already exists
+     */
+    public synchronized boolean addMember(Member member) {
+        if (membersByUserId.containsKey(member.getUserId()) || membersByNickname.containsKey(member.getNickname())) {
+            return false;
+        }
+        member.setId(memberIdSequence.incrementAndGet());
+        members.add(member);
+        membersByUserId.put(member.getUserId(), member);
+        membersByNickname.put(member.getNickname(), member);
+        count(member, 1);
+        markChanged();
+        return true;
+    }
+
+    public synchronized Member removeMember(String userId) {
+        Member member = membersByUserId.remove(userId);
+        if (member != null) {
+            members.remove(member);
+            membersByNickname.remove(member.getNickname(), member);
+            count(member, -1);
+            markChanged();
+        }
+        return member;
+    }
+
+    public synchronized List<Member> removeSpectators() {
+        List<Member> spectators = new ArrayList<>(spectatorsCount);
+        for (Member member : members) {
+            if (member.isSpectator()) {
+                spectators.add(member);
+            }
+        }
+        for (Member spectator : spectators) {
+            removeMember(spectator.getUserId());
+        }
+        return spectators;
+    }
+
+    /**
+     * Changes nickname of the room member.
+     *
+     * @return {@code false} if another member already has this nickname
+     */
+    public synchronized boolean changeMemberNickname(Member member, String nickname) {
+        Member owner = membersByNickname.get(nickname);
+        if (owner == member) {
+            return true;
+        }
+        if (owner != null) {
+            return false;
+        }
+        membersByNickname.remove(member.getNickname(), member);
+        member.setNickname(nickname);
+        membersByNickname.put(nickname, member);
+        markChanged();
+        return true;
+    }
+
+    public synchronized void changeMemberPlayerStatus(Member member, boolean isPlayer) {
+        count(member, -1);
+        member.setPlayer(isPlayer);
+        if (!isPlayer) {
+            member.setReady(false);
+        }
+        count(member, 1);
+        markChanged();
+    }
+
+    public synchronized void changeMemberReadyStatus(Member member, boolean isReady) {
+        count(member, -1);
+        member.setReady(isReady);
+        count(member, 1);
+        markChanged();
+    }
+
+    private void count(Member member, int delta) {
+        if (member.isPlayer()) {
+            playersCount += delta;
+        } else {
+            spectatorsCount += delta;
+        }
+        if (member.isReady()) {
+            readyCount += delta;
+        }
     }
 
     @Override
@@ -0,0 +1,69 @@
+package ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service;
+
+import lombok.Getter;
+
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Cluster registry: rooms are assigned to nodes by consistent hashing of the room code,
+ * so adding or removing a node moves only rooms of that node.
+ */
+public class ConsistentHashRoomRegistry implements RoomRegistry {
+
+    private static final int DEFAULT_VIRTUAL_NODES = 160;
+
+    @Getter
+    private final String localNode;
+
+    @Getter
+    private final List<String> nodes;
+
+    private final NavigableMap<Long, String> ring = new TreeMap<>();
+
+    public ConsistentHashRoomRegistry(String localNode, List<String> nodes) {
+        this(localNode, nodes, DEFAULT_VIRTUAL_NODES);
+    }
+
+    public ConsistentHashRoomRegistry(String localNode, List<String> nodes, int virtualNodes) {
+        if (!nodes.contains(localNode)) {
+            throw new IllegalArgumentException("Local node " + localNode + " is not in cluster nodes " + nodes);
+        }
+        this.localNode = localNode;
+        this.nodes = List.copyOf(nodes);
+        // Каждый узел занимает несколько точек кольца для равномерного распределения комнат
+        for (String node : nodes) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.put(hash(node + "#" + i), node);
+            }
+        }
+    }
+
+    @Override
+    public boolean isLocal(String code) {
+        return localNode.equals(getOwner(code));
+    }
+
+    @Override
+    public String getOwner(String code) {
+        Map.Entry<Long, String> entry = ring.ceilingEntry(hash(code));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    private static long hash(String key) {
+        // FNV-1a с финализатором murmur3 для лучшего перемешивания коротких ключей
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb53f5a4c1b2bL;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -4,10 +4,48 @@ package ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service;
 import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.pojo.Game;
 import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.pojo.Member;
 
+import java.time.Duration;
 import java.util.List;
 
 public interface GameService<G extends Game> {
     String getGameName();
     G createGameInstance();
     void startNewGame(Game g, List<Member> members);
+
+    /**
+     * Interval of server ticks for real-time games, zero for games that change only on client events.
+     * Ticks run while the game is started.
+     */
+    default Duration getTickInterval(Game g) {
+        return Duration.ZERO;
+    }
+
+    /**
+     * Advances game state by the time passed since the previous tick.
+     * Called from the room execution context, so in any {@link RoomExecutionMode} it never runs
+     * concurrently with other work of the room. {@code GAME_STATE} requested by client events
+     * is sent once after the next tick instead of after every event. Ticks are not room activity,
+     * but a changed game is written by the next room snapshot.
+     *
+     * @return true, if the game state changed and must be sent to clients and persisted
+     */
+    default boolean onTick(Game g, long deltaNanos) {
+        return false;
+    }
+
+    /**
+     * Serializes game state for room snapshots.
+     * Rooms with started game are restored after restart only if this method returns not null.
+     * Called from the room execution context.
+     */
+    default byte[] serializeGame(Game g) {
+        return null;
+    }
+
+    /**
+     * Restores game from data returned by {@link #serializeGame(Game)}.
+     */
+    default G deserializeGame(byte[] data) {
+        throw new UnsupportedOperationException("Game deserialization is not supported");
+    }
 }
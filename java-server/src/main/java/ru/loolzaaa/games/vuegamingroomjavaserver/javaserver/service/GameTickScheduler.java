@@ -0,0 +1,118 @@
+package ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service;
+
+import lombok.Setter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.metrics.GameServerMetrics;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fixed rate timers of real-time games, spread over a small pool of timer threads.
+ * <p>
+ * Every next tick is scheduled relative to the planned time of the previous one,
+ * so the rate doesn't drift because of scheduling delays. Ticks that are late
+ * for a whole interval are skipped and reported as overruns instead of running in a burst.
+ */
+public class GameTickScheduler {
+
+    private static final Logger log = LogManager.getLogger(GameTickScheduler.class);
+
+    private final ScheduledExecutorService[] timers;
+
+    private final AtomicInteger nextTimer = new AtomicInteger();
+
+    @Setter
+    private GameServerMetrics metrics = GameServerMetrics.NOOP;
+
+    public GameTickScheduler(int threadsCount) {
+        if (threadsCount < 1) {
+            throw new IllegalArgumentException("Tick threads count must be positive");
+        }
+        this.timers = new ScheduledExecutorService[threadsCount];
+        for (int i = 0; i < threadsCount; i++) {
+            final String threadName = "game-tick-" + i;
+            timers[i] = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, threadName);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Starts calling the tick task every interval until the returned ticker is stopped.
+     * The task must be short: it blocks other tickers of the same timer thread.
+     */
+    public Ticker start(Duration interval, Runnable tick) {
+        // Комнаты распределяются по потокам по очереди, а не по коду: так нагрузка ровнее
+        ScheduledExecutorService timer = timers[Math.floorMod(nextTimer.getAndIncrement(), timers.length)];
+        Ticker ticker = new Ticker(timer, interval.toNanos(), tick);
+        ticker.schedule(interval.toNanos());
+        return ticker;
+    }
+
+    public void shutdown() {
+        for (ScheduledExecutorService timer : timers) {
+            timer.shutdownNow();
+        }
+    }
+
+    public final class Ticker implements Runnable {
+
+        private final ScheduledExecutorService timer;
+
+        private final long interval;
+
+        private final Runnable tick;
+
+        // Запланированное время следующего тика, используется только потоком таймера
+        private long nextTickAt;
+
+        private volatile boolean stopped;
+
+        private Ticker(ScheduledExecutorService timer, long interval, Runnable tick) {
+            this.timer = timer;
+            this.interval = interval;
+            this.tick = tick;
+            this.nextTickAt = System.nanoTime() + interval;
+        }
+
+        public void stop() {
+            stopped = true;
+        }
+
+        @Override
+        public void run() {
+            if (stopped) {
+                return;
+            }
+            long lateness = System.nanoTime() - nextTickAt;
+            if (lateness >= interval) {
+                long skipped = lateness / interval;
+                metrics.ticksOverrun((int) Math.min(skipped, Integer.MAX_VALUE));
+                nextTickAt += skipped * interval;
+            }
+            nextTickAt += interval;
+            try {
+                tick.run();
+            } catch (RuntimeException e) {
+                log.error("Game tick error: {}", e.getLocalizedMessage());
+                log.debug(e);
+            }
+            if (!stopped) {
+                schedule(nextTickAt - System.nanoTime());
+            }
+        }
+
+        private void schedule(long delay) {
+            if (!timer.isShutdown()) {
+                timer.schedule(this, Math.max(delay, 0), TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+}
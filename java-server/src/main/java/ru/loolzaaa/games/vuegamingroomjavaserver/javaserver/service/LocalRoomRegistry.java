@@ -0,0 +1,17 @@
+package ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service;
+
+/**
+ * Single node registry: all rooms are hosted by this node.
+ */
+public class LocalRoomRegistry implements RoomRegistry {
+
+    @Override
+    public boolean isLocal(String code) {
+        return true;
+    }
+
+    @Override
+    public String getOwner(String code) {
+        return null;
+    }
+}
@@ -0,0 +1,162 @@
+package ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Allocator of room codes of fixed length.
+ * <p>
+ * Code is packed into int as a number in base 26 and converted to string
+ * only when it leaves the service. New codes are taken in pseudo-random order
+ * of a Feistel permutation over the whole code space, released codes are reused
+ * after that in release order, so allocation doesn't depend on how many codes are used.
+ */
+public class RoomCodeAllocator {
+
+    public static final int MAX_CODE_LENGTH = 6;
+
+    private static final int ALPHABET_SIZE = 26;
+
+    private static final int ROUNDS = 4;
+
+    private final int codeLength;
+
+    // Количество всех кодов заданной длины
+    private final int size;
+
+    // Размер области перестановки: степень двойки не меньше size
+    private final int domain;
+
+    private final int halfBits;
+
+    private final int halfMask;
+
+    private final int[] roundKeys = new int[ROUNDS];
+
+    // Номер следующего кода в перестановке
+    private int next;
+
+    // Освобожденные коды: кольцевой буфер
+    private int[] released = new int[16];
+    private int releasedHead;
+    private int releasedCount;
+
+    public RoomCodeAllocator(int codeLength) {
+        if (codeLength < 1 || codeLength > MAX_CODE_LENGTH) {
+            throw new IllegalArgumentException("Room code length must be from 1 to " + MAX_CODE_LENGTH);
+        }
+        this.codeLength = codeLength;
+        int size = 1;
+        for (int i = 0; i < codeLength; i++) {
+            size *= ALPHABET_SIZE;
+        }
+        this.size = size;
+        // Перестановка строится над 2^(2*halfBits) >= size, значения вне кодов пропускаются
+        int bits = 32 - Integer.numberOfLeadingZeros(size - 1);
+        this.halfBits = Math.max((bits + 1) / 2, 1);
+        this.halfMask = (1 << halfBits) - 1;
+        this.domain = 1 << (halfBits * 2);
+        for (int i = 0; i < ROUNDS; i++) {
+            roundKeys[i] = ThreadLocalRandom.current().nextInt();
+        }
+    }
+
+    public int getCodeLength() {
+        return codeLength;
+    }
+
+    /**
+     * Returns code that is not allocated now, or -1 if all codes are allocated.
+     */
+    public synchronized int allocate() {
+        while (next < domain) {
+            int code = permute(next++);
+            if (code < size) {
+                return code;
+            }
+        }
+        if (releasedCount == 0) {
+            return -1;
+        }
+        int code = released[releasedHead];
+        releasedHead = (releasedHead + 1) % released.length;
+        releasedCount--;
+        return code;
+    }
+
+    /**
+     * Returns allocated code to the pool.
+     */
+    public synchronized void release(int code) {
+        if (code < 0 || code >= size) {
+            return;
+        }
+        // Код, еще не выданный из перестановки, будет выдан из нее позже
+        if (next < domain && unpermute(code) >= next) {
+            return;
+        }
+        if (releasedCount == released.length) {
+            int[] grown = new int[released.length * 2];
+            for (int i = 0; i < releasedCount; i++) {
+                grown[i] = released[(releasedHead + i) % released.length];
+            }
+            released = grown;
+            releasedHead = 0;
+        }
+        released[(releasedHead + releasedCount) % released.length] = code;
+        releasedCount++;
+    }
+
+    public String encode(int code) {
+        char[] chars = new char[codeLength];
+        for (int i = codeLength - 1; i >= 0; i--) {
+            chars[i] = (char) ('A' + code % ALPHABET_SIZE);
+            code /= ALPHABET_SIZE;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Returns packed code, or -1 if the string is not a code of this allocator.
+     */
+    public int decode(String code) {
+        if (code == null || code.length() != codeLength) {
+            return -1;
+        }
+        int result = 0;
+        for (int i = 0; i < codeLength; i++) {
+            char c = code.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                return -1;
+            }
+            result = result * ALPHABET_SIZE + (c - 'A');
+        }
+        return result;
+    }
+
+    private int permute(int value) {
+        int left = value >>> halfBits;
+        int right = value & halfMask;
+        for (int i = 0; i < ROUNDS; i++) {
+            int mixed = left ^ (round(right, roundKeys[i]) & halfMask);
+            left = right;
+            right = mixed;
+        }
+        return (left << halfBits) | right;
+    }
+
+    private int unpermute(int value) {
+        int left = value >>> halfBits;
+        int right = value & halfMask;
+        for (int i = ROUNDS - 1; i >= 0; i--) {
+            int mixed = right ^ (round(left, roundKeys[i]) & halfMask);
+            right = left;
+            left = mixed;
+        }
+        return (left << halfBits) | right;
+    }
+
+    private static int round(int half, int key) {
+        int h = (half ^ key) * 0x9E3779B1;
+        return h ^ (h >>> 15);
+    }
+}
@@ -0,0 +1,20 @@
+package ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service;
+
+/**
+ * How work of rooms (REST changes, incoming websocket messages, session cleanup) is executed.
+ */
+public enum RoomExecutionMode {
+    /**
+     * On the calling thread (websocket container I/O thread), one task of a room at a time.
+     */
+    INLINE,
+    /**
+     * On virtual threads (Java 21+, platform threads otherwise), one task of a room at a time.
+     */
+    VIRTUAL,
+    /**
+     * On a fixed pool of threads sized to the number of cores, every room is bound to one thread,
+     * so all changes of the room, including REST requests, are made by a single writer.
+     */
+    SHARDED
+}
@@ -0,0 +1,212 @@
+package ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.pojo.Room;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Executes work of rooms. Tasks of one room are executed one at a time in submission order,
+ * tasks of different rooms may run in parallel.
+ * <p>
+ * In {@link RoomExecutionMode#INLINE} mode a task runs on the calling thread under the monitor
+ * of the room mailbox. The mailbox monitor is taken before the room monitor and other monitors of the room,
+ * so code holding them must not submit tasks of the same room.
+ */
+public class RoomExecutor {
+
+    private static final Logger log = LogManager.getLogger(RoomExecutor.class);
+
+    // Почтовый ящик комнаты, задачи которого выполняются в текущем потоке
+    private static final ThreadLocal<Mailbox> CURRENT_MAILBOX = new ThreadLocal<>();
+
+    private final RoomExecutionMode mode;
+
+    private final Executor executor;
+
+    private final ExecutorService[] shards;
+
+    // Номер шарда, потоком которого является текущий поток
+    private final ThreadLocal<Integer> currentShard = new ThreadLocal<>();
+
+    public RoomExecutor(RoomExecutionMode mode) {
+        this(mode, Runtime.getRuntime().availableProcessors());
+    }
+
+    public RoomExecutor(RoomExecutionMode mode, int shardsCount) {
+        this.mode = mode;
+        this.executor = switch (mode) {
+            case INLINE, SHARDED -> Runnable::run;
+            case VIRTUAL -> createVirtualThreadExecutor();
+        };
+        this.shards = mode == RoomExecutionMode.SHARDED ? createShards(shardsCount) : new ExecutorService[0];
+    }
+
+    public RoomExecutionMode getMode() {
+        return mode;
+    }
+
+    public boolean isInline() {
+        return mode == RoomExecutionMode.INLINE;
+    }
+
+    public void execute(Room<?> room, Runnable task) {
+        switch (mode) {
+            case INLINE -> {
+                // Задачи комнаты выполняются в потоке вызывающего, но по одной: под монитором почтового ящика
+                synchronized (room.getMailbox()) {
+                    task.run();
+                }
+            }
+            case SHARDED -> shards[getShardIndex(room)].execute(() -> runTask(task));
+            case VIRTUAL -> {
+                Mailbox mailbox = room.getMailbox();
+                boolean startDrain;
+                synchronized (mailbox) {
+                    mailbox.tasks.add(task);
+                    startDrain = !mailbox.draining;
+                    mailbox.draining = true;
+                }
+                if (startDrain) {
+                    executor.execute(() -> drain(mailbox));
+                }
+            }
+        }
+    }
+
+    /**
+     * Executes action in order with other tasks of the room and waits for its result.
+     * Runs action immediately, if called from a task of the same room.
+     * Runtime exceptions of the action are rethrown as is.
+     */
+    public <T> T call(Room<?> room, Supplier<T> action) {
+        if (isRoomThread(room)) {
+            return action.get();
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        execute(room, () -> {
+            try {
+                result.complete(action.get());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    public void run(Room<?> room, Runnable action) {
+        call(room, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    public void shutdown() {
+        if (executor instanceof ExecutorService executorService) {
+            executorService.shutdown();
+        }
+        for (ExecutorService shard : shards) {
+            shard.shutdown();
+        }
+    }
+
+    private boolean isRoomThread(Room<?> room) {
+        return switch (mode) {
+            case INLINE -> Thread.holdsLock(room.getMailbox());
+            case SHARDED -> Integer.valueOf(getShardIndex(room)).equals(currentShard.get());
+            case VIRTUAL -> CURRENT_MAILBOX.get() == room.getMailbox();
+        };
+    }
+
+    private int getShardIndex(Room<?> room) {
+        return Math.floorMod(room.getCode().hashCode(), shards.length);
+    }
+
+    private void drain(Mailbox mailbox) {
+        CURRENT_MAILBOX.set(mailbox);
+        try {
+            while (true) {
+                Runnable task;
+                synchronized (mailbox) {
+                    task = mailbox.tasks.poll();
+                    if (task == null) {
+                        mailbox.draining = false;
+                        return;
+                    }
+                }
+                runTask(task);
+            }
+        } finally {
+            CURRENT_MAILBOX.remove();
+        }
+    }
+
+    private static void runTask(Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            log.error("Room task error: {}", e.getLocalizedMessage());
+            log.debug(e);
+        }
+    }
+
+    private ExecutorService[] createShards(int shardsCount) {
+        ExecutorService[] shards = new ExecutorService[shardsCount];
+        for (int i = 0; i < shardsCount; i++) {
+            final int shardIndex = i;
+            shards[i] = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(() -> {
+                    currentShard.set(shardIndex);
+                    r.run();
+                }, "room-shard-" + shardIndex);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return shards;
+    }
+
+    private static ExecutorService createVirtualThreadExecutor() {
+        // Проект собирается под Java 17, поэтому виртуальные потоки доступны только через рефлексию
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            log.warn("Virtual threads are not available in Java {}, platform threads are used instead",
+                    Runtime.version().feature());
+            AtomicInteger threadNumber = new AtomicInteger();
+            return Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "room-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Not yet executed tasks of a room.
+     */
+    public static final class Mailbox {
+        // Guarded by mailbox monitor
+        private final Queue<Runnable> tasks = new ArrayDeque<>();
+        private boolean draining;
+    }
+}
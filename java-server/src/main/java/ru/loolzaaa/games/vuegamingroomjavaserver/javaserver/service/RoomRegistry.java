@@ -0,0 +1,17 @@
+package ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service;
+
+/**
+ * Decides which server node hosts a room.
+ */
+public interface RoomRegistry {
+
+    /**
+     * Returns {@code true} if the room with the code is hosted by this node.
+     */
+    boolean isLocal(String code);
+
+    /**
+     * Returns address of the node that hosts the room with the code.
+     */
+    String getOwner(String code);
+}
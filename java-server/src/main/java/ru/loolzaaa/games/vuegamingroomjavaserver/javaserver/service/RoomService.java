@@ -2,62 +2,81 @@ package ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service;
 
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.dto.MemberChangeDTO;
 import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.dto.RoomDTO;
 import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.exception.RoomException;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.exception.RoomOwnerException;
 import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.pojo.Game;
 import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.pojo.Member;
 import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.pojo.Room;
 
-import java.time.LocalDateTime;
+import java.lang.ref.WeakReference;
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
 
 @RequiredArgsConstructor
 public class RoomService {
 
-    private static final String ROOM_CODE_CHARACTERS = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
-
     @Getter
     private final Map<String, Room<? extends Game>> rooms = new ConcurrentHashMap<>();
-    @Getter
-    private final Lock roomsLock = new ReentrantLock();
 
     private final GameService<? extends Game> gameService;
 
+    // Сроки проверки комнат, упорядоченные по времени
+    private final DelayQueue<RoomExpiration> roomExpirations = new DelayQueue<>();
+
+    /**
+     * Time without activity after which a room with not started game is removed.
+     */
+    @Setter
+    private Duration lobbyTtl = Duration.ofMinutes(60);
+    /**
+     * Time without activity after which a room with started game is removed.
+     */
+    @Setter
+    private Duration gameTtl = Duration.ofMinutes(60);
+
+    @Setter
+    private RoomRegistry roomRegistry = new LocalRoomRegistry();
+
+    private volatile RoomCodeAllocator roomCodeAllocator = new RoomCodeAllocator(4);
+
+    /**
+     * Number of letters in new room codes, each letter multiplies the count of codes by 26.
+     */
+    public void setRoomCodeLength(int roomCodeLength) {
+        this.roomCodeAllocator = new RoomCodeAllocator(roomCodeLength);
+    }
+
     public RoomDTO createRoom(String userId, String nickname) {
         if (nickname == null || nickname.trim().isEmpty()) {
             throw new RoomException("Nickname must be at least 1 character length");
         }
         nickname = nickname.trim();
 
-        final String code = generateRoomCode();
         final String webSocketToken = UUID.randomUUID().toString();
         if (userId == null) {
             userId = UUID.randomUUID().toString();
         }
 
-        Member member = new Member();
-        member.setUserId(userId);
-        member.setNickname(nickname);
-        member.setColor(generateMemberColor());
+        Member member = new Member(userId, nickname, generateMemberColor());
         member.setAdmin(true);
-        member.setSpectator(true);
-        member.setReady(false);
 
         Game gameInstance = gameService.createGameInstance();
-        Room<?> room = new Room<>(code, webSocketToken, gameInstance);
-        room.getMembers().add(member);
-
-        roomsLock.lock();
-        try {
-            rooms.put(code, room);
-        } finally {
-            roomsLock.unlock();
-        }
+        Room<?> room;
+        // Код занимается атомарно, совпасть он может только с кодом восстановленной комнаты
+        do {
+            room = new Room<>(generateLocalRoomCode(), webSocketToken, gameInstance);
+            room.addMember(member);
+        } while (rooms.putIfAbsent(room.getCode(), room) != null);
+        scheduleExpirationCheck(room, room.getLastActivity() + getMinTtlNanos());
 
-        return new RoomDTO(code, webSocketToken, room.isGameStarted(), userId);
+        return new RoomDTO(room.getCode(), webSocketToken, room.isGameStarted(), userId);
     }
 
     public RoomDTO joinToRoom(String code, String userId, String nickname) {
@@ -66,10 +85,7 @@ public class RoomService {
         }
         nickname = nickname.trim();
 
-        Room<? extends Game> room = rooms.get(code);
-        if (room == null) {
-            throw new RoomException("The room doesn't exist");
-        }
+        Room<? extends Game> room = getRoom(code);
 
         boolean existingMember = false;
         Member member = null;
@@ -79,14 +95,8 @@ public class RoomService {
         }
         if (member == null) {
             String newUserId = userId != null ? userId : UUID.randomUUID().toString();
-            member = new Member();
-            member.setUserId(newUserId);
-            member.setColor(generateMemberColor());
-            member.setAdmin(false);
-            member.setSpectator(true);
-            member.setReady(false);
+            member = new Member(newUserId, nickname, generateMemberColor());
         }
-        member.setNickname(nickname);
 
         // Войти в комнату после старта игры может только тот, кто в ней уже состоит
         if (!existingMember && room.isGameStarted()) {
@@ -97,44 +107,38 @@ public class RoomService {
             throw new RoomException("Room is full");
         }
 
-        // Добавляем в комнату только тех, кто ранее не состоял в ней
-        if (!existingMember) {
-            room.getMembers().add(member);
+        // Добавляем в комнату только тех, кто ранее не состоял в ней, остальным меняем ник
+        boolean nicknameAccepted = existingMember
+                ? room.changeMemberNickname(member, nickname)
+                : room.addMember(member);
+        if (!nicknameAccepted) {
+            // Новый член комнаты мог столкнуться как по нику, так и по id с тем, кто вошел одновременно с ним
+            boolean userIdTaken = !existingMember && room.getMemberByUserId(member.getUserId()) != null;
+            throw new RoomException(userIdTaken ? "User with same id already exists" : "User with same nickname already exists");
         }
 
-        room.setLastActivity(LocalDateTime.now());
+        room.updateLastActivity();
 
         return new RoomDTO(code, room.getWebSocketToken(), room.isGameStarted(), member.getUserId());
     }
 
     public void changeMemberNickname(String code, String userId, String newNickname) {
-        Room<? extends Game> room = rooms.get(code);
-        if (room == null) {
-            throw new RoomException("The room doesn't exist");
-        }
+        Room<? extends Game> room = getRoom(code);
 
         Member member = room.getMemberByUserId(userId);
         if (member == null) {
             throw new RoomException("The member doesn't exist");
         }
 
-        long sameNicknameUsers = room.getMembers().stream()
-                .filter(m -> m.getNickname().equals(newNickname))
-                .count();
-        if (sameNicknameUsers > 0) {
+        if (!room.changeMemberNickname(member, newNickname)) {
             throw new RoomException("User with same nickname already exists");
         }
 
-        member.setNickname(newNickname);
-
-        room.setLastActivity(LocalDateTime.now());
+        room.updateLastActivity();
     }
 
     public void changeMemberColor(String code, String userId, String newColor) {
-        Room<? extends Game> room = rooms.get(code);
-        if (room == null) {
-            throw new RoomException("The room doesn't exist");
-        }
+        Room<? extends Game> room = getRoom(code);
 
         Member member = room.getMemberByUserId(userId);
         if (member == null) {
@@ -143,38 +147,24 @@ public class RoomService {
 
         member.setColor(newColor);
 
-        room.setLastActivity(LocalDateTime.now());
+        room.updateLastActivity();
     }
 
     public void changeMemberPlayerStatus(String code, String userId, boolean newStatus) {
-        Room<? extends Game> room = rooms.get(code);
-        if (room == null) {
-            throw new RoomException("The room doesn't exist");
-        }
+        Room<? extends Game> room = getRoom(code);
 
         Member member = room.getMemberByUserId(userId);
         if (member == null) {
             throw new RoomException("The member doesn't exist");
         }
 
-        long playersCount = room.getMembers().stream().filter(Member::isPlayer).count();
-        if (playersCount == room.getGame().getMaxPlayers()) {
-            throw new RoomException("Max players reached");
-        }
-
-        member.setPlayer(newStatus);
-        if (!newStatus) {
-            member.setReady(false);
-        }
+        changeMemberPlayerStatus(room, member, newStatus);
 
-        room.setLastActivity(LocalDateTime.now());
+        room.updateLastActivity();
     }
 
     public void changeMemberReadyStatus(String code, String userId, boolean newStatus) {
-        Room<? extends Game> room = rooms.get(code);
-        if (room == null) {
-            throw new RoomException("The room doesn't exist");
-        }
+        Room<? extends Game> room = getRoom(code);
         if (room.isGameStarted()) {
             throw new RoomException("Game already started");
         }
@@ -184,16 +174,58 @@ public class RoomService {
             throw new RoomException("The member doesn't exist or it is not a player");
         }
 
-        member.setReady(newStatus);
+        room.changeMemberReadyStatus(member, newStatus);
 
-        room.setLastActivity(LocalDateTime.now());
+        room.updateLastActivity();
     }
 
-    public void startGame(String code, String userId, boolean forceStart) {
-        Room<? extends Game> room = rooms.get(code);
-        if (room == null) {
-            throw new RoomException("The room doesn't exist");
+    /**
+     * Applies all changes of room members in order, or none of them if any change fails.
+     * Must be called from the room execution context.
+     */
+    public void changeMembers(String code, List<MemberChangeDTO> changes) {
+        Room<? extends Game> room = getRoom(code);
+        if (changes == null) {
+            throw new RoomException("Member changes must be set");
+        }
+
+        // Изменения членов комнаты сериализуются ее монитором: чужие изменения не вклиниваются в пачку
+        synchronized (room) {
+            // Все, что проверяется без применения, проверяется до первого изменения
+            List<Member> members = new ArrayList<>(changes.size());
+            for (int i = 0; i < changes.size(); i++) {
+                MemberChangeDTO change = changes.get(i);
+                if (change == null || change.getUserId() == null) {
+                    throw new RoomException("Change %d: user id must be set".formatted(i));
+                }
+                Member member = room.getMemberByUserId(change.getUserId());
+                if (member == null) {
+                    throw new RoomException("Change %d of user %s: The member doesn't exist".formatted(i, change.getUserId()));
+                }
+                members.add(member);
+            }
+
+            List<MemberState> previousStates = new ArrayList<>(changes.size());
+            for (int i = 0; i < changes.size(); i++) {
+                MemberChangeDTO change = changes.get(i);
+                Member member = members.get(i);
+                previousStates.add(new MemberState(member));
+                try {
+                    changeMember(room, member, change);
+                } catch (RoomException e) {
+                    for (int j = previousStates.size() - 1; j >= 0; j--) {
+                        previousStates.get(j).restore(room);
+                    }
+                    throw new RoomException("Change %d of user %s: %s".formatted(i, change.getUserId(), e.getMessage()));
+                }
+            }
         }
+
+        room.updateLastActivity();
+    }
+
+    public void startGame(String code, String userId, boolean forceStart) {
+        Room<? extends Game> room = getRoom(code);
         if (room.isGameStarted()) {
             throw new RoomException("Game already started");
         }
@@ -203,9 +235,7 @@ public class RoomService {
             throw new RoomException("The member doesn't exist or it is not an admin");
         }
 
-        boolean allPlayersReady = room.getMembers().stream()
-                .filter(Member::isPlayer)
-                .allMatch(Member::isReady);
+        boolean allPlayersReady = room.getReadyCount() == room.getPlayersCount();
         if (!forceStart && !allPlayersReady) {
             throw new RoomException("Some members aren't ready");
         }
@@ -214,7 +244,7 @@ public class RoomService {
         room.getMembers().stream()
                 .filter(Member::isPlayer)
                 .forEach(m -> {
-                    m.setReady(true);
+                    room.changeMemberReadyStatus(m, true);
                     players.add(m);
                 });
         if (players.size() < room.getGame().getMinPlayers()) {
@@ -223,30 +253,160 @@ public class RoomService {
 
         gameService.startNewGame(room.getGame(), players);
 
-        room.setLastActivity(LocalDateTime.now());
+        room.updateLastActivity();
+    }
+
+    /**
+     * Interval of game ticks of the room, zero if the game doesn't need ticks.
+     */
+    public Duration getTickInterval(Room<? extends Game> room) {
+        Duration interval = gameService.getTickInterval(room.getGame());
+        return interval != null ? interval : Duration.ZERO;
+    }
+
+    /**
+     * Advances game of the started room, must be called from the room execution context.
+     *
+     * @return true, if the game state changed
+     */
+    public boolean tickGame(Room<? extends Game> room, long deltaNanos) {
+        boolean changed = room.isGameStarted() && gameService.onTick(room.getGame(), deltaNanos);
+        if (changed) {
+            // Тик не продлевает жизнь комнаты, но измененная игра должна попасть в снимок
+            room.markChanged();
+        }
+        return changed;
     }
 
     public List<Member> getAllSpectators(String code) {
+        Room<? extends Game> room = getRoom(code);
+
+        return room.getMembers().stream()
+                .filter(Member::isSpectator)
+                .toList();
+    }
+
+    /**
+     * Adds room restored from a snapshot, if there is no room with the same code.
+     */
+    public boolean restoreRoom(Room<? extends Game> room) {
+        if (rooms.putIfAbsent(room.getCode(), room) != null) {
+            return false;
+        }
+        scheduleExpirationCheck(room, room.getLastActivity() + getMinTtlNanos());
+        return true;
+    }
+
+    /**
+     * Removes and returns rooms without activity during TTL of their state.
+     * Only rooms whose check time has come are checked, active ones are rescheduled.
+     * Room is checked at least once per the shorter of lobby and game TTL,
+     * so a state change can't postpone its expiration for longer than that.
+     */
+    public List<Room<? extends Game>> removeExpiredRooms() {
+        List<Room<? extends Game>> expiredRooms = new ArrayList<>();
+        // Новые сроки ставятся в очередь после обхода: при нулевом TTL они уже наступили
+        List<RoomExpiration> rescheduled = new ArrayList<>();
+        RoomExpiration roomExpiration;
+        while ((roomExpiration = roomExpirations.poll()) != null) {
+            Room<? extends Game> room = roomExpiration.room().get();
+            // Комната уже удалена другим способом
+            if (room == null || rooms.get(room.getCode()) != room) {
+                continue;
+            }
+            long now = System.nanoTime();
+            long expirationTime = getExpirationTime(room);
+            if (expirationTime - now > 0) {
+                // Состояние комнаты может смениться до срока: тогда ее TTL станет другим
+                long minCheckTime = now + getMinTtlNanos();
+                long checkTime = expirationTime - minCheckTime < 0 ? expirationTime : minCheckTime;
+                rescheduled.add(new RoomExpiration(new WeakReference<>(room), checkTime));
+            } else if (removeRoom(room.getCode(), room)) {
+                expiredRooms.add(room);
+            }
+        }
+        roomExpirations.addAll(rescheduled);
+        return expiredRooms;
+    }
+
+    /**
+     * Removes the room and returns its code to the pool of free codes.
+     */
+    public boolean removeRoom(String code, Room<?> room) {
+        if (!rooms.remove(code, room)) {
+            return false;
+        }
+        RoomCodeAllocator allocator = roomCodeAllocator;
+        allocator.release(allocator.decode(code));
+        return true;
+    }
+
+    private Room<? extends Game> getRoom(String code) {
         Room<? extends Game> room = rooms.get(code);
         if (room == null) {
+            // Комната может находиться на другом узле кластера
+            if (!roomRegistry.isLocal(code)) {
+                throw new RoomOwnerException(code, roomRegistry.getOwner(code));
+            }
             throw new RoomException("The room doesn't exist");
         }
+        return room;
+    }
 
-        return room.getMembers().stream()
-                .filter(Member::isSpectator)
-                .toList();
+    private void changeMember(Room<? extends Game> room, Member member, MemberChangeDTO change) {
+        if (change.getNickname() != null && !room.changeMemberNickname(member, change.getNickname())) {
+            throw new RoomException("User with same nickname already exists");
+        }
+        if (change.getColor() != null) {
+            member.setColor(change.getColor());
+        }
+        if (change.getPlayer() != null) {
+            changeMemberPlayerStatus(room, member, change.getPlayer());
+        }
+        if (change.getReady() != null) {
+            if (room.isGameStarted()) {
+                throw new RoomException("Game already started");
+            }
+            if (!member.isPlayer()) {
+                throw new RoomException("The member is not a player");
+            }
+            room.changeMemberReadyStatus(member, change.getReady());
+        }
     }
 
-    private String generateRoomCode() {
-        Random random = new Random();
-        StringBuilder code;
+    private void changeMemberPlayerStatus(Room<? extends Game> room, Member member, boolean newStatus) {
+        // Лимит проверяется только для нового игрока, уйти в зрители можно всегда
+        if (newStatus && !member.isPlayer() && room.getPlayersCount() >= room.getGame().getMaxPlayers()) {
+            throw new RoomException("Max players reached");
+        }
+        room.changeMemberPlayerStatus(member, newStatus);
+    }
+
+    private void scheduleExpirationCheck(Room<? extends Game> room, long checkTime) {
+        roomExpirations.add(new RoomExpiration(new WeakReference<>(room), checkTime));
+    }
+
+    private long getMinTtlNanos() {
+        return Math.min(lobbyTtl.toNanos(), gameTtl.toNanos());
+    }
+
+    private long getExpirationTime(Room<?> room) {
+        Duration ttl = room.isGameStarted() ? gameTtl : lobbyTtl;
+        return room.getLastActivity() + ttl.toNanos();
+    }
+
+    private String generateLocalRoomCode() {
+        RoomCodeAllocator allocator = roomCodeAllocator;
+        String code;
         do {
-            code = new StringBuilder();
-            for (int i = 0; i < 4; i++) {
-                code.append(ROOM_CODE_CHARACTERS.charAt(random.nextInt(ROOM_CODE_CHARACTERS.length())));
+            int packedCode = allocator.allocate();
+            if (packedCode < 0) {
+                throw new RoomException("No free room codes");
             }
-        } while (rooms.containsKey(code.toString()));
-        return code.toString();
+            // Коды других узлов кластера не возвращаются: этот узел их никогда не выдаст
+            code = allocator.encode(packedCode);
+        } while (!roomRegistry.isLocal(code));
+        return code;
     }
 
     private String generateMemberColor() {
@@ -254,4 +414,37 @@ public class RoomService {
         int nextInt = random.nextInt(0xffffff + 1);
         return String.format("#%06x", nextInt);
     }
+
+    /**
+     * State of a member before a batch change, to roll the batch back.
+     */
+    private record MemberState(Member member, String nickname, String color, boolean player, boolean ready) {
+
+        MemberState(Member member) {
+            this(member, member.getNickname(), member.getColor(), member.isPlayer(), member.isReady());
+        }
+
+        void restore(Room<? extends Game> room) {
+            room.changeMemberPlayerStatus(member, player);
+            room.changeMemberReadyStatus(member, ready);
+            room.changeMemberNickname(member, nickname);
+            member.setColor(color);
+        }
+    }
+
+    /**
+     * Time to check expiration of the room. Queue doesn't keep removed rooms in memory until that time.
+     */
+    private record RoomExpiration(WeakReference<Room<? extends Game>> room, long expirationTime) implements Delayed {
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(expirationTime - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            return Long.compare(expirationTime - ((RoomExpiration) o).expirationTime, 0);
+        }
+    }
 }
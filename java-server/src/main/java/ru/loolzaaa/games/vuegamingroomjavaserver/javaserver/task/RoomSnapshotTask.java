@@ -0,0 +1,375 @@
+package ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.task;
+
+import lombok.Setter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.scheduling.annotation.Scheduled;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.pojo.Game;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.pojo.Member;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.pojo.Room;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service.GameService;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service.RoomExecutor;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service.RoomService;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.websocket.GameWebSocketHandler;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persists rooms to a binary snapshot file and an append-only journal, so rooms survive server restart.
+ * <p>
+ * Every run appends only rooms changed since the previous run to the journal.
+ * When the journal grows over {@link #setMaxJournalSize(long) limit}, a new snapshot
+ * with all rooms is written and the journal is truncated.
+ */
+public class RoomSnapshotTask {
+
+    private static final Logger log = LogManager.getLogger(RoomSnapshotTask.class);
+
+    private static final int SNAPSHOT_MAGIC = 0x52534E50;
+    private static final int JOURNAL_MAGIC = 0x524A524E;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+
+    private static final byte RECORD_PUT = 1;
+    private static final byte RECORD_REMOVE = 2;
+
+    private final RoomService roomService;
+
+    private final GameService<? extends Game> gameService;
+
+    private final GameWebSocketHandler gameWebSocketHandler;
+
+    private final RoomExecutor roomExecutor;
+
+    private final Path directory;
+
+    private final Path snapshotFile;
+
+    private final Path journalFile;
+
+    @Setter
+    private long maxJournalSize = 16 * 1024 * 1024;
+
+    // Комнаты в том состоянии, в котором они записаны на диск
+    private final Map<String, PersistedRoom> persistedRooms = new HashMap<>();
+
+    private FileChannel journal;
+
+    private long generation;
+
+    public RoomSnapshotTask(RoomService roomService,
+                            GameService<? extends Game> gameService,
+                            GameWebSocketHandler gameWebSocketHandler,
+                            RoomExecutor roomExecutor,
+                            Path directory) {
+        this.roomService = roomService;
+        this.gameService = gameService;
+        this.gameWebSocketHandler = gameWebSocketHandler;
+        this.roomExecutor = roomExecutor;
+        this.directory = directory;
+        this.snapshotFile = directory.resolve("rooms.snapshot");
+        this.journalFile = directory.resolve("rooms.journal");
+        log.info("Room snapshot task scheduled, directory: {}", directory.toAbsolutePath());
+    }
+
+    /**
+     * Restores rooms and their websocket tokens from the last snapshot and journal,
+     * then compacts them into a new snapshot.
+     */
+    public synchronized void restore() throws IOException {
+        Files.createDirectories(directory);
+        Map<String, byte[]> records = new LinkedHashMap<>();
+        long snapshotGeneration = readFile(snapshotFile, SNAPSHOT_MAGIC, -1, records);
+        // Журнал старого поколения уже вошел в снимок
+        readFile(journalFile, JOURNAL_MAGIC, snapshotGeneration, records);
+        generation = Math.max(snapshotGeneration, 0);
+
+        int restoredCount = 0;
+        for (byte[] record : records.values()) {
+            Room<? extends Game> room;
+            try {
+                room = readRoom(record);
+            } catch (IOException | RuntimeException e) {
+                log.warn("Room restore error: {}", e.getLocalizedMessage());
+                log.debug(e);
+                continue;
+            }
+            if (room != null && roomService.restoreRoom(room)) {
+                gameWebSocketHandler.createNewSessionsListForRoom(room.getWebSocketToken(), room.getCode());
+                restoredCount++;
+            }
+        }
+        writeSnapshot();
+        log.info("Restored {} rooms from snapshot", restoredCount);
+    }
+
+    @Scheduled(initialDelay = 5, fixedDelay = 5, timeUnit = TimeUnit.SECONDS)
+    public synchronized void persist() {
+        try {
+            if (journal == null) {
+                return;
+            }
+            int changesCount = appendChanges();
+            if (changesCount == 0) {
+                return;
+            }
+            journal.force(false);
+            if (journal.size() > maxJournalSize) {
+                writeSnapshot();
+            }
+            log.debug("Persisted {} room changes", changesCount);
+        } catch (IOException | RuntimeException e) {
+            log.error("Room snapshot error: {}", e.getLocalizedMessage());
+            log.debug(e);
+        }
+    }
+
+    /**
+     * Writes final snapshot on shutdown.
+     */
+    public synchronized void close() throws IOException {
+        if (journal == null) {
+            return;
+        }
+        appendChanges();
+        writeSnapshot();
+        journal.close();
+        journal = null;
+    }
+
+    private int appendChanges() throws IOException {
+        Map<String, Room<? extends Game>> rooms = roomService.getRooms();
+        int changesCount = 0;
+        for (Room<? extends Game> room : rooms.values()) {
+            PersistedRoom persisted = persistedRooms.get(room.getCode());
+            long stateRevision = room.getStateRevision();
+            if (persisted != null && persisted.room() == room && persisted.stateRevision() == stateRevision) {
+                continue;
+            }
+            byte[] record = roomExecutor.call(room, () -> writeRoom(room));
+            if (record != null) {
+                writeRecord(journal, RECORD_PUT, record);
+                changesCount++;
+            } else if (persisted != null && persisted.stored()) {
+                writeRecord(journal, RECORD_REMOVE, room.getCode().getBytes(StandardCharsets.UTF_8));
+                changesCount++;
+            }
+            persistedRooms.put(room.getCode(), new PersistedRoom(room, stateRevision, record != null));
+        }
+        Iterator<Map.Entry<String, PersistedRoom>> iterator = persistedRooms.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, PersistedRoom> entry = iterator.next();
+            if (rooms.get(entry.getKey()) == entry.getValue().room()) {
+                continue;
+            }
+            iterator.remove();
+            if (entry.getValue().stored()) {
+                writeRecord(journal, RECORD_REMOVE, entry.getKey().getBytes(StandardCharsets.UTF_8));
+                changesCount++;
+            }
+        }
+        return changesCount;
+    }
+
+    /**
+     * Writes all rooms to a new snapshot file, that atomically replaces the previous one,
+     * and starts a new journal.
+     */
+    private void writeSnapshot() throws IOException {
+        persistedRooms.clear();
+        long nextGeneration = generation + 1;
+        Path tempFile = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            writeHeader(out, SNAPSHOT_MAGIC, nextGeneration);
+            for (Room<? extends Game> room : roomService.getRooms().values()) {
+                long stateRevision = room.getStateRevision();
+                byte[] record = roomExecutor.call(room, () -> writeRoom(room));
+                if (record != null) {
+                    out.writeByte(RECORD_PUT);
+                    out.writeInt(record.length);
+                    out.write(record);
+                }
+                persistedRooms.put(room.getCode(), new PersistedRoom(room, stateRevision, record != null));
+            }
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(tempFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        generation = nextGeneration;
+
+        if (journal != null) {
+            journal.close();
+        }
+        journal = FileChannel.open(journalFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        ByteArrayOutputStream header = new ByteArrayOutputStream(HEADER_SIZE);
+        writeHeader(new DataOutputStream(header), JOURNAL_MAGIC, generation);
+        writeFully(journal, ByteBuffer.wrap(header.toByteArray()));
+        journal.force(false);
+    }
+
+    /**
+     * Reads records of snapshot or journal file into map by room code.
+     * Journal is read only if its generation matches the snapshot generation.
+     *
+     * @return generation of the file or -1, if file is missing or broken
+     */
+    private long readFile(Path file, int magic, long expectedGeneration, Map<String, byte[]> records) throws IOException {
+        if (!Files.exists(file)) {
+            return -1;
+        }
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != magic || buffer.getInt() != FORMAT_VERSION) {
+            log.warn("Unknown format of room snapshot file {}, skip it", file);
+            return -1;
+        }
+        long fileGeneration = buffer.getLong();
+        if (expectedGeneration >= 0 && fileGeneration != expectedGeneration) {
+            return -1;
+        }
+        while (buffer.remaining() >= 5) {
+            byte type = buffer.get();
+            int length = buffer.getInt();
+            // Запись, оборванная при аварийной остановке
+            if (length < 0 || length > buffer.remaining()) {
+                log.warn("Truncated record in room snapshot file {}", file);
+                break;
+            }
+            byte[] record = new byte[length];
+            buffer.get(record);
+            if (type == RECORD_PUT) {
+                records.put(readCode(record), record);
+            } else if (type == RECORD_REMOVE) {
+                records.remove(new String(record, StandardCharsets.UTF_8));
+            }
+        }
+        return fileGeneration;
+    }
+
+    /**
+     * Serializes room or returns null, if room with started game can't be restored.
+     */
+    private byte[] writeRoom(Room<? extends Game> room) {
+        byte[] game = gameService.serializeGame(room.getGame());
+        if (game == null && room.isGameStarted()) {
+            return null;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(room.getCode());
+            out.writeUTF(room.getWebSocketToken());
+            out.writeBoolean(room.isGameStarted());
+            List<Member> members = room.getMembers();
+            out.writeInt(members.size());
+            for (Member member : members) {
+                out.writeUTF(member.getUserId());
+                out.writeUTF(member.getNickname());
+                out.writeBoolean(member.getColor() != null);
+                if (member.getColor() != null) {
+                    out.writeUTF(member.getColor());
+                }
+                out.writeByte((member.isAdmin() ? 1 : 0) | (member.isPlayer() ? 2 : 0) | (member.isReady() ? 4 : 0));
+            }
+            out.writeInt(game != null ? game.length : -1);
+            if (game != null) {
+                out.write(game);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private Room<? extends Game> readRoom(byte[] record) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        String code = in.readUTF();
+        String webSocketToken = in.readUTF();
+        boolean gameStarted = in.readBoolean();
+        int membersCount = in.readInt();
+        Member[] members = new Member[membersCount];
+        int[] flags = new int[membersCount];
+        for (int i = 0; i < membersCount; i++) {
+            String userId = in.readUTF();
+            String nickname = in.readUTF();
+            String color = in.readBoolean() ? in.readUTF() : null;
+            members[i] = new Member(userId, nickname, color);
+            flags[i] = in.readByte();
+        }
+        int gameLength = in.readInt();
+        Game game;
+        if (gameLength >= 0) {
+            game = gameService.deserializeGame(in.readNBytes(gameLength));
+        } else if (!gameStarted) {
+            game = gameService.createGameInstance();
+        } else {
+            return null;
+        }
+
+        Room<Game> room = new Room<>(code, webSocketToken, game);
+        for (int i = 0; i < membersCount; i++) {
+            Member member = members[i];
+            member.setAdmin((flags[i] & 1) != 0);
+            room.addMember(member);
+            if ((flags[i] & 2) != 0) {
+                room.changeMemberPlayerStatus(member, true);
+            }
+            if ((flags[i] & 4) != 0) {
+                room.changeMemberReadyStatus(member, true);
+            }
+        }
+        room.setGameStarted(gameStarted);
+        return room;
+    }
+
+    private static String readCode(byte[] record) throws IOException {
+        return new DataInputStream(new ByteArrayInputStream(record)).readUTF();
+    }
+
+    private static void writeHeader(DataOutputStream out, int magic, long generation) throws IOException {
+        out.writeInt(magic);
+        out.writeInt(FORMAT_VERSION);
+        out.writeLong(generation);
+        out.flush();
+    }
+
+    private static void writeRecord(FileChannel channel, byte type, byte[] record) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(5 + record.length);
+        buffer.put(type).putInt(record.length).put(record).flip();
+        writeFully(channel, buffer);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private record PersistedRoom(Room<? extends Game> room, long stateRevision, boolean stored) {
+    }
+}
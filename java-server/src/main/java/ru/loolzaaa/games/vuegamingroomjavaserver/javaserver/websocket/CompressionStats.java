@@ -0,0 +1,49 @@
+package ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.websocket;
+
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compression ratio and CPU cost of outgoing messages by event type.
+ */
+public class CompressionStats {
+
+    private static final String UNKNOWN_EVENT = "UNKNOWN";
+
+    private final Map<String, EventStats> events = new ConcurrentHashMap<>();
+
+    public Map<String, EventStats> getEvents() {
+        return Collections.unmodifiableMap(events);
+    }
+
+    void record(String event, int rawBytes, int compressedBytes, long nanos) {
+        EventStats stats = events.computeIfAbsent(event != null ? event : UNKNOWN_EVENT, e -> new EventStats());
+        stats.messages.increment();
+        stats.rawBytes.add(rawBytes);
+        stats.compressedBytes.add(compressedBytes);
+        stats.nanos.add(nanos);
+    }
+
+    @Getter
+    public static class EventStats {
+        private final LongAdder messages = new LongAdder();
+        private final LongAdder rawBytes = new LongAdder();
+        private final LongAdder compressedBytes = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+        public double getRatio() {
+            long raw = rawBytes.sum();
+            return raw == 0 ? 1.0 : (double) compressedBytes.sum() / raw;
+        }
+
+        @Override
+        public String toString() {
+            return "messages=%d, raw=%dB, compressed=%dB, ratio=%.2f, cpu=%dus".formatted(
+                    messages.sum(), rawBytes.sum(), compressedBytes.sum(), getRatio(), nanos.sum() / 1000);
+        }
+    }
+}
@@ -1,55 +1,89 @@
 package ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.websocket;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
 import org.springframework.web.socket.WebSocketSession;
-import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
 import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.exception.RoomException;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.metrics.GameServerMetrics;
 import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.pojo.Game;
 import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.pojo.Member;
 import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.pojo.Room;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service.GameTickScheduler;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service.RoomExecutionMode;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service.RoomExecutor;
 import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service.RoomService;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.time.LocalDateTime;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.locks.Lock;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import static ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.websocket.WebSocketEventProcessor.*;
 
 
-@RequiredArgsConstructor
-public class GameWebSocketHandler extends TextWebSocketHandler {
+public class GameWebSocketHandler extends AbstractWebSocketHandler {
 
     private static final Logger log = LogManager.getLogger(GameWebSocketHandler.class);
 
     public static final String UPDATE_MEMBERS = "UPDATE_MEMBERS";
+    public static final String MEMBER_ADDED = "MEMBER_ADDED";
+    public static final String MEMBER_CHANGED = "MEMBER_CHANGED";
+    public static final String MEMBER_REMOVED = "MEMBER_REMOVED";
+    public static final String SPECTATORS_COUNT_CHANGED = "SPECTATORS_COUNT_CHANGED";
+    public static final String SYNC_MEMBERS = "SYNC_MEMBERS";
     public static final String GAME_STATE = "GAME_STATE";
+    public static final String GAME_STATE_PATCH = "GAME_STATE_PATCH";
+    public static final String SYNC_GAME_STATE = "SYNC_GAME_STATE";
     public static final String UPDATE_SETTINGS = "UPDATE_SETTINGS";
     public static final String START_GAME = "START_GAME";
     public static final String RESTART_GAME = "RESTART_GAME";
 
     private static final String ERROR = "ERROR";
     private static final String PING = "PING";
-    private static final String PONG = "PONG";
+    static final String PONG = "PONG";
 
+    // Ключ представления для общего состояния игры, не совпадает ни с одним id пользователя
+    private static final String SHARED_VIEW_KEY = "\u0000shared";
+
+    private static final String PLAYER_SESSION_ATTRIBUTE = "playerSession";
+    static final String FORMAT_ATTRIBUTE = "format";
+    static final String COMPRESSION_ATTRIBUTE = "compression";
+
+    // Обратный индекс (код комнаты -> токен) хранится в самом RoomWebSocketSessionsHolder
     private final Map<String, String> webSocketTokenRoomCodeMap = new ConcurrentHashMap<>();
     private final Map<String, RoomWebSocketSessionsHolder> roomSessionsMap = new ConcurrentHashMap<>();
-    private final Lock roomSessionsLock = new ReentrantLock();
-
-    private final Map<String, Lock> sessionLockMap = new ConcurrentHashMap<>();
 
     private final ObjectMapper mapper;
 
@@ -57,6 +91,147 @@ public class GameWebSocketHandler extends TextWebSocketHandler {
 
     private final WebSocketEventProcessor webSocketEventProcessor;
 
+    private final MessageCodec codec;
+    private final ObjectReader jsonNodeReader;
+    private final Map<String, IncomingEventRoute> incomingEventRoutes = new HashMap<>();
+    private final IncomingEventRoute untypedEventRoute = new IncomingEventRoute(this::processUntypedEvent, true);
+
+    @Setter
+    private RoomExecutor roomExecutor = new RoomExecutor(RoomExecutionMode.INLINE);
+
+    @Setter
+    private Executor outboundExecutor = Runnable::run;
+    @Setter
+    private int outboundQueueCapacity = 256;
+    @Setter
+    private OverflowPolicy outboundOverflowPolicy = OverflowPolicy.DROP_OLDEST;
+
+    @Setter
+    private ScheduledExecutorService scheduler;
+    @Setter
+    private Duration membersUpdateDelay = Duration.ZERO;
+    @Setter
+    private Duration membersUpdateMaxDelay = Duration.ofMillis(200);
+    @Setter
+    private boolean memberDeltas;
+
+    /**
+     * Send GAME_STATE_PATCH with changes since the last game state sent to the session,
+     * when it is smaller than the full state.
+     */
+    @Setter
+    private boolean gameStateDiff;
+    /**
+     * Maximum number of patches in a row, after that the full state is sent.
+     */
+    @Setter
+    private int gameStateSnapshotInterval = 20;
+
+    /**
+     * Whether sessions may request deflate compression of large outgoing messages.
+     */
+    @Setter
+    private boolean compression;
+
+    /**
+     * Time during which a session closed without close frame from the client stays in the room,
+     * so the client can reconnect without membership changes. Zero disables session resumption.
+     */
+    @Setter
+    private Duration resumeGracePeriod = Duration.ZERO;
+    /**
+     * Maximum number of events kept for a disconnected session, after that
+     * the reconnected client gets the full state instead.
+     */
+    @Setter
+    private int replayBufferSize = 64;
+
+    /**
+     * Incoming messages per second of one session, zero disables the limit.
+     */
+    @Setter
+    private double sessionRateLimit;
+    @Setter
+    private int sessionRateLimitBurst = 20;
+    /**
+     * Incoming messages per second of all sessions of one room, zero disables the limit.
+     */
+    @Setter
+    private double roomRateLimit;
+    @Setter
+    private int roomRateLimitBurst = 100;
+    @Setter
+    private RateLimitPolicy rateLimitPolicy = RateLimitPolicy.DROP;
+
+    /**
+     * Timers of games with server ticks, without it games change only on client events.
+     */
+    @Setter
+    private GameTickScheduler tickScheduler;
+
+    @Setter
+    private GameServerMetrics metrics = GameServerMetrics.NOOP;
+
+    private final AtomicInteger openSessionsCount = new AtomicInteger();
+
+    public GameWebSocketHandler(ObjectMapper mapper,
+                                RoomService roomService,
+                                WebSocketEventProcessor webSocketEventProcessor) {
+        this.mapper = mapper;
+        this.roomService = roomService;
+        this.webSocketEventProcessor = webSocketEventProcessor;
+        this.codec = new MessageCodec(mapper);
+        this.jsonNodeReader = mapper.readerFor(JsonNode.class);
+
+        incomingEventRoutes.put(PING, new IncomingEventRoute(this::sendPong, false));
+        incomingEventRoutes.put(SYNC_MEMBERS, new IncomingEventRoute(this::syncMembers, false));
+        incomingEventRoutes.put(SYNC_GAME_STATE, new IncomingEventRoute(this::syncGameState, false));
+        incomingEventRoutes.put(UPDATE_SETTINGS, new IncomingEventRoute(this::updateGameSettings, true));
+        webSocketEventProcessor.registerIncomingEvents(new IncomingEventRegistry() {
+            @Override
+            public <T> void register(String event, Class<T> payloadType, IncomingEventHandler<T> handler) {
+                ObjectReader reader = mapper.readerFor(payloadType);
+                incomingEventRoutes.put(event, new IncomingEventRoute((playerWebSocketSession, message) -> handler.handle(
+                        readData(playerWebSocketSession, message, reader),
+                        playerWebSocketSession.holder.room.getGame(),
+                        playerWebSocketSession.userId,
+                        playerWebSocketSession.sendMessage,
+                        playerWebSocketSession.callbackEvent), true));
+                log.debug("Registered typed incoming event {} with payload {}", event, payloadType.getName());
+            }
+        });
+    }
+
+    /**
+     * Minimum size in bytes of encoded message to be compressed.
+     */
+    public void setCompressionThreshold(int compressionThreshold) {
+        codec.setCompressionThreshold(compressionThreshold);
+    }
+
+    public CompressionStats getCompressionStats() {
+        return codec.getCompressionStats();
+    }
+
+    /**
+     * Number of open websocket connections. Sessions that wait for resumption have no connection and are not counted.
+     */
+    public int getOpenSessionsCount() {
+        return openSessionsCount.get();
+    }
+
+    /**
+     * Number of sessions in the room, including sessions that wait for resumption.
+     */
+    int getRoomSessionsCount(String code) {
+        RoomWebSocketSessionsHolder roomWebSocketSessionsHolder = roomSessionsMap.get(code);
+        return roomWebSocketSessionsHolder != null ? roomWebSocketSessionsHolder.playerWebSocketSessions.size() : 0;
+    }
+
+    public void logCompressionStats() {
+        codec.getCompressionStats().getEvents().forEach((event, stats) -> log.info("Compression of {}: {}", event, stats));
+    }
+
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
         String token = (String) session.getAttributes().get("token");
@@ -71,82 +246,360 @@ public class GameWebSocketHandler extends TextWebSocketHandler {
             return;
         }
 
-        session.getAttributes().put("code", code);
-        List<PlayerWebSocketSession> playerWebSocketSessions = roomSessionsMap.get(code).playerWebSocketSessions;
-        PlayerWebSocketSession playerWebSocketSession = new PlayerWebSocketSession(userId, session);
-        playerWebSocketSessions.add(playerWebSocketSession);
-        sessionLockMap.put(session.getId(), playerWebSocketSession.lock);
-        log.info("Websocket connection established for user {} in room {}", userId, code);
+        RoomWebSocketSessionsHolder roomWebSocketSessionsHolder = roomSessionsMap.get(code);
+        if (roomWebSocketSessionsHolder == null) {
+            session.close(CloseStatus.BAD_DATA);
+            log.warn("Room {} removed before websocket connection of user with id {}", code, userId);
+            return;
+        }
+        WireFormat format = (WireFormat) session.getAttributes().getOrDefault(FORMAT_ATTRIBUTE, WireFormat.JSON);
+        boolean sessionCompression = compression && Boolean.TRUE.equals(session.getAttributes().get(COMPRESSION_ATTRIBUTE));
+        OutboundMessageQueue outboundQueue = new OutboundMessageQueue(
+                session, format, sessionCompression, outboundExecutor, outboundQueueCapacity, outboundOverflowPolicy, metrics);
+        PlayerWebSocketSession playerWebSocketSession =
+                new PlayerWebSocketSession(userId, session, format, outboundQueue, roomWebSocketSessionsHolder);
+        playerWebSocketSession.sendMessage = payload -> sendMessage(outboundQueue, payload);
+        playerWebSocketSession.callbackEvent = e -> sendEvent(roomWebSocketSessionsHolder, e);
+        if (sessionRateLimit > 0) {
+            playerWebSocketSession.rateLimit = new TokenBucket(sessionRateLimit, sessionRateLimitBurst);
+        }
+        // Все данные сессии привязываются один раз, обработка сообщений не ищет их заново
+        session.getAttributes().put(PLAYER_SESSION_ATTRIBUTE, playerWebSocketSession);
+        openSessionsCount.incrementAndGet();
+        log.info("Websocket connection established for user {} in room {} with {} format{}",
+                userId, code, format, sessionCompression ? " and compression" : "");
+
+        // Остальная работа выполняется по порядку с другими задачами комнаты
+        roomExecutor.execute(roomWebSocketSessionsHolder.room, () -> joinRoomSessions(playerWebSocketSession));
+    }
 
+    private void joinRoomSessions(PlayerWebSocketSession playerWebSocketSession) {
+        RoomWebSocketSessionsHolder roomWebSocketSessionsHolder = playerWebSocketSession.holder;
+        List<PlayerWebSocketSession> playerWebSocketSessions = roomWebSocketSessionsHolder.playerWebSocketSessions;
+        Room<?> room = roomWebSocketSessionsHolder.room;
+        String userId = playerWebSocketSession.userId;
+        String code = room.getCode();
+        OutboundMessageQueue outboundQueue = playerWebSocketSession.outboundQueue;
+        PlayerWebSocketSession suspendedSession = roomWebSocketSessionsHolder.suspendedSessions.remove(userId);
+        if (suspendedSession != null && resumeSession(suspendedSession, playerWebSocketSession)) {
+            log.info("Websocket session of user {} in room {} resumed", userId, code);
+            return;
+        }
+        if (memberDeltas) {
+            // Снимок последнего отправленного состояния, дальше подключившийся получит только изменения
+            synchronized (roomWebSocketSessionsHolder) {
+                playerWebSocketSessions.add(playerWebSocketSession);
+                sendMembersSnapshot(roomWebSocketSessionsHolder, outboundQueue);
+            }
+        } else {
+            playerWebSocketSessions.add(playerWebSocketSession);
+        }
         // Обновить состояние всех членов комнаты из-за вновь подключившегося
-        sendEvent(code, UPDATE_MEMBERS);
+        sendEvent(roomWebSocketSessionsHolder, UPDATE_MEMBERS);
 
         // Отправка текущего состояния игры (если начата) для вновь подключившегося
-        Room<? extends Game> room = roomService.getRooms().get(code);
         if (room.isGameStarted()) {
-            ObjectNode gameState = mapper.createObjectNode();
-            gameState.put(EVENT_PROPERTY_NAME, GAME_STATE);
-            JsonNode gameStateData = webSocketEventProcessor.createGameState(room.getGame(), userId);
-            if (gameStateData != null) {
-                gameState.set(DATA_PROPERTY_NAME, gameStateData);
-            }
-            sendTextMessage(session, playerWebSocketSession.lock, gameState);
+            ObjectNode gameState = createGameStateNode(room.getGame(), userId);
+            sendGameState(playerWebSocketSession, new OutgoingMessage(codec, gameState, !gameStateDiff), null);
             log.debug("Send game state for user id {} in room {}: {}", userId, code, gameState);
         }
     }
 
+    /**
+     * Replaces disconnected session with the new one in place, so the room sees no membership changes,
+     * and sends missed events or, if they didn't fit the replay buffer, the full state.
+     */
+    private boolean resumeSession(PlayerWebSocketSession suspendedSession, PlayerWebSocketSession playerWebSocketSession) {
+        RoomWebSocketSessionsHolder roomWebSocketSessionsHolder = playerWebSocketSession.holder;
+        suspendedSession.resumeTimeout.cancel(false);
+        if (!roomWebSocketSessionsHolder.playerWebSocketSessions.contains(suspendedSession)) {
+            return false;
+        }
+        // Сессии, закрытые сервером (например, наблюдатели после старта игры), не восстанавливаются:
+        // таймаут ожидания уже отменен, поэтому ресурсы освобождаются здесь
+        if (suspendedSession.closedByServer) {
+            roomWebSocketSessionsHolder.playerWebSocketSessions.remove(suspendedSession);
+            cleanSessionResources(suspendedSession);
+            return false;
+        }
+        boolean replayed;
+        synchronized (suspendedSession) {
+            synchronized (playerWebSocketSession) {
+                playerWebSocketSession.lastGameState = suspendedSession.lastGameState;
+                playerWebSocketSession.gameStatePatches = suspendedSession.gameStatePatches;
+                replayed = suspendedSession.outboundQueue.resume(playerWebSocketSession.outboundQueue);
+                if (!replayed) {
+                    playerWebSocketSession.lastGameState = null;
+                }
+                suspendedSession.resumedSession = playerWebSocketSession;
+            }
+        }
+        List<PlayerWebSocketSession> playerWebSocketSessions = roomWebSocketSessionsHolder.playerWebSocketSessions;
+        synchronized (roomWebSocketSessionsHolder) {
+            int index = playerWebSocketSessions.indexOf(suspendedSession);
+            if (index >= 0) {
+                playerWebSocketSessions.set(index, playerWebSocketSession);
+            } else {
+                playerWebSocketSessions.add(playerWebSocketSession);
+            }
+        }
+        if (!replayed) {
+            Room<?> room = roomWebSocketSessionsHolder.room;
+            log.debug("Replay buffer of user {} in room {} overflowed, send full state", playerWebSocketSession.userId, room.getCode());
+            sendMembersSnapshot(roomWebSocketSessionsHolder, playerWebSocketSession.outboundQueue);
+            if (room.isGameStarted()) {
+                ObjectNode gameState = createGameStateNode(room.getGame(), playerWebSocketSession.userId);
+                sendGameState(playerWebSocketSession, new OutgoingMessage(codec, gameState, !gameStateDiff), null);
+            }
+        }
+        return true;
+    }
+
     @Override
     protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
-        log.debug("Incoming message: {}", message);
+        dispatchIncomingMessage(session, message);
+    }
 
-        Lock sessionLock = sessionLockMap.get(session.getId());
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) throws Exception {
+        if (!roomExecutor.isInline()) {
+            // Буфер контейнера может быть переиспользован после возврата из обработчика
+            ByteBuffer payload = message.getPayload();
+            ByteBuffer copy = ByteBuffer.allocate(payload.remaining()).put(payload.duplicate()).flip();
+            message = new BinaryMessage(copy, message.isLast());
+        }
+        dispatchIncomingMessage(session, message);
+    }
 
-        ObjectNode messageNode = (ObjectNode) mapper.readTree(message.getPayload());
-        String event = messageNode.get(EVENT_PROPERTY_NAME).asText();
+    private void dispatchIncomingMessage(WebSocketSession session, WebSocketMessage<?> message) throws Exception {
+        log.debug("Incoming message: {}", message);
 
-        if (event.equals(PING)) {
-            messageNode.put(EVENT_PROPERTY_NAME, PONG);
-            sendTextMessage(session, sessionLock, messageNode);
+        PlayerWebSocketSession playerWebSocketSession =
+                (PlayerWebSocketSession) session.getAttributes().get(PLAYER_SESSION_ATTRIBUTE);
+        if (playerWebSocketSession == null) {
+            log.warn("Incoming message for not established websocket session {}", session.getId());
+            return;
+        }
+        long delay = acquireRateLimit(playerWebSocketSession);
+        if (delay < 0) {
+            return;
+        }
+        if (delay > 0) {
+            scheduler.schedule(() -> roomExecutor.execute(playerWebSocketSession.holder.room,
+                    () -> handleIncomingMessageSafely(playerWebSocketSession, message)), delay, TimeUnit.NANOSECONDS);
             return;
         }
+        roomExecutor.execute(playerWebSocketSession.holder.room,
+                () -> handleIncomingMessageSafely(playerWebSocketSession, message));
+    }
 
-        String code = messageNode.get(DATA_PROPERTY_NAME).get("code").asText();
-        Room<?> room = roomService.getRooms().get(code);
-        Game game = room.getGame();
+    private void handleIncomingMessageSafely(PlayerWebSocketSession playerWebSocketSession, WebSocketMessage<?> message) {
+        try {
+            handleIncomingMessage(playerWebSocketSession, message);
+        } catch (Exception e) {
+            // Как и в потоке контейнера: необработанная ошибка закрывает сессию
+            log.error("Websocket message handling error for user {}: {}",
+                    playerWebSocketSession.userId, e.getLocalizedMessage());
+            log.debug(e);
+            closePlayerSession(playerWebSocketSession, CloseStatus.SERVER_ERROR);
+        }
+    }
 
-        RoomWebSocketSessionsHolder roomWebSocketSessionsHolder = roomSessionsMap.get(code);
-        List<PlayerWebSocketSession> playerWebSocketSessions = roomWebSocketSessionsHolder.playerWebSocketSessions;
-        String userId = playerWebSocketSessions.stream()
-                .filter(playerWebSocketSession -> playerWebSocketSession.webSocketSession.getId().equals(session.getId()))
-                .map(playerWebSocketSession -> playerWebSocketSession.userId)
-                .findFirst()
-                .orElseThrow();
+    /**
+     * Takes a token from the session and room buckets.
+     *
+     * @return zero to process the message now, delay in nanoseconds to process it later,
+     * or -1 if the message must not be processed
+     */
+    private long acquireRateLimit(PlayerWebSocketSession playerWebSocketSession) {
+        TokenBucket sessionBucket = playerWebSocketSession.rateLimit;
+        TokenBucket roomBucket = playerWebSocketSession.holder.rateLimit;
+        if (sessionBucket == null && roomBucket == null) {
+            return 0;
+        }
+        if (playerWebSocketSession.closedByServer) {
+            return -1;
+        }
+        // Без планировщика отложить сообщение некуда
+        boolean delay = rateLimitPolicy == RateLimitPolicy.DELAY && scheduler != null;
+        long sessionDelay = 0;
+        if (sessionBucket != null) {
+            sessionDelay = sessionBucket.acquire(delay ? sessionBucket.getRefillNanos() : 0);
+            if (sessionDelay < 0) {
+                throttle(playerWebSocketSession, "session");
+                return -1;
+            }
+        }
+        long roomDelay = 0;
+        if (roomBucket != null) {
+            roomDelay = roomBucket.acquire(delay ? roomBucket.getRefillNanos() : 0);
+            if (roomDelay < 0) {
+                // Сообщение не пройдет, токен сессии не должен пропасть
+                if (sessionBucket != null) {
+                    sessionBucket.release();
+                }
+                throttle(playerWebSocketSession, "room");
+                return -1;
+            }
+        }
+        long result = Math.max(sessionDelay, roomDelay);
+        if (result > 0) {
+            metrics.messageThrottled(sessionDelay >= roomDelay ? "session" : "room");
+        }
+        return result;
+    }
 
-        Consumer<JsonNode> sendMessage = payload -> sendTextMessage(session, sessionLock, payload);
-        Consumer<String> callbackEvent = e -> sendEvent(code, e);
+    private void throttle(PlayerWebSocketSession playerWebSocketSession, String limit) {
+        metrics.messageThrottled(limit);
+        log.trace("Incoming message of user {} in room {} exceeded {} rate limit",
+                playerWebSocketSession.userId, playerWebSocketSession.holder.room.getCode(), limit);
+        if (rateLimitPolicy != RateLimitPolicy.CLOSE) {
+            return;
+        }
+        // Сессия закрывается после отправки ERROR, без ожидания переподключения
+        playerWebSocketSession.closedByServer = true;
+        ObjectNode errorNode = mapper.createObjectNode();
+        errorNode.put(EVENT_PROPERTY_NAME, ERROR);
+        errorNode.set(DATA_PROPERTY_NAME, webSocketEventProcessor.processEventError(
+                new RoomException("Too many messages, " + limit + " rate limit exceeded")));
+        playerWebSocketSession.sendMessage.accept(errorNode);
+        metrics.errorSent();
+        playerWebSocketSession.outboundQueue.closeAfterDrain(CloseStatus.POLICY_VIOLATION);
+        log.warn("Websocket session of user {} in room {} closed because of {} rate limit",
+                playerWebSocketSession.userId, playerWebSocketSession.holder.room.getCode(), limit);
+    }
 
+    private void handleIncomingMessage(PlayerWebSocketSession playerWebSocketSession, WebSocketMessage<?> message) throws Exception {
+        long start = System.nanoTime();
         try {
-            if (event.equals(UPDATE_SETTINGS)) {
-                Member member = room.getMemberByUserId(userId);
-                if (member == null || !member.isAdmin()) {
-                    throw new RoomException("The member doesn't exist or it is not an admin");
-                }
-                webSocketEventProcessor.updateGameSettings(
-                        messageNode.get(DATA_PROPERTY_NAME).get("settings"),
-                        game,
-                        sendMessage,
-                        callbackEvent);
-            } else {
-                webSocketEventProcessor.incomingEvent(messageNode, game, userId, sendMessage, callbackEvent);
-            }
+            routeIncomingMessage(playerWebSocketSession, message);
+        } finally {
+            metrics.messageReceived(message.getPayloadLength(), System.nanoTime() - start);
+        }
+    }
+
+    private void routeIncomingMessage(PlayerWebSocketSession playerWebSocketSession, WebSocketMessage<?> message) throws Exception {
+        String event = readEvent(playerWebSocketSession, message);
+        IncomingEventRoute route = incomingEventRoutes.getOrDefault(event, untypedEventRoute);
+        if (!route.gameEvent()) {
+            route.handler().handle(playerWebSocketSession, message);
+            return;
+        }
+
+        try {
+            route.handler().handle(playerWebSocketSession, message);
         } catch (Exception e) {
             ObjectNode errorNode = mapper.createObjectNode();
             errorNode.put(EVENT_PROPERTY_NAME, ERROR);
             errorNode.set(DATA_PROPERTY_NAME, webSocketEventProcessor.processEventError(e));
-            sendMessage.accept(errorNode);
+            playerWebSocketSession.sendMessage.accept(errorNode);
+            metrics.errorSent();
+        }
+
+        playerWebSocketSession.holder.room.updateLastActivity();
+    }
+
+    private void sendPong(PlayerWebSocketSession playerWebSocketSession, WebSocketMessage<?> message) throws IOException {
+        // Эхо PING без построения дерева: копируем токены, подменяя только имя события
+        WireFormat format = playerWebSocketSession.format;
+        ByteArrayOutputStream out = new ByteArrayOutputStream(message.getPayloadLength() + 1);
+        try (JsonParser parser = codec.createParser(message, format);
+             JsonGenerator generator = codec.getMapper(format).getFactory().createGenerator(out)) {
+            parser.nextToken();
+            generator.writeStartObject();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                if (EVENT_PROPERTY_NAME.equals(field)) {
+                    generator.writeStringField(EVENT_PROPERTY_NAME, PONG);
+                } else {
+                    generator.writeFieldName(field);
+                    generator.copyCurrentStructure(parser);
+                }
+            }
+            generator.writeEndObject();
         }
+        playerWebSocketSession.outboundQueue.offer(
+                new OutgoingMessage(PONG, format, codec.wrap(out.toByteArray(), format)));
+    }
 
-        room.setLastActivity(LocalDateTime.now());
+    private void syncMembers(PlayerWebSocketSession playerWebSocketSession, WebSocketMessage<?> message) {
+        // Клиент обнаружил пропуск ревизии членов комнаты
+        log.debug("Members snapshot requested in room {} by user {}",
+                playerWebSocketSession.holder.room.getCode(), playerWebSocketSession.userId);
+        sendMembersSnapshot(playerWebSocketSession.holder, playerWebSocketSession.outboundQueue);
+    }
+
+    private void syncGameState(PlayerWebSocketSession playerWebSocketSession, WebSocketMessage<?> message) {
+        // Клиент не смог применить патч состояния игры
+        Room<?> room = playerWebSocketSession.holder.room;
+        if (!room.isGameStarted()) {
+            return;
+        }
+        log.debug("Game state snapshot requested in room {} by user {}", room.getCode(), playerWebSocketSession.userId);
+        ObjectNode eventNode = createGameStateNode(room.getGame(), playerWebSocketSession.userId);
+        synchronized (playerWebSocketSession) {
+            playerWebSocketSession.lastGameState = null;
+            sendGameState(playerWebSocketSession, new OutgoingMessage(codec, eventNode, !gameStateDiff), null);
+        }
+    }
+
+    private void updateGameSettings(PlayerWebSocketSession playerWebSocketSession, WebSocketMessage<?> message) throws IOException {
+        Room<?> room = playerWebSocketSession.holder.room;
+        Member member = room.getMemberByUserId(playerWebSocketSession.userId);
+        if (member == null || !member.isAdmin()) {
+            throw new RoomException("The member doesn't exist or it is not an admin");
+        }
+        JsonNode dataNode = readData(playerWebSocketSession, message, jsonNodeReader);
+        webSocketEventProcessor.updateGameSettings(
+                dataNode != null ? dataNode.get("settings") : null,
+                room.getGame(),
+                playerWebSocketSession.sendMessage,
+                playerWebSocketSession.callbackEvent);
+    }
+
+    private void processUntypedEvent(PlayerWebSocketSession playerWebSocketSession, WebSocketMessage<?> message) throws IOException {
+        ObjectNode messageNode;
+        try (JsonParser parser = codec.createParser(message, playerWebSocketSession.format)) {
+            messageNode = (ObjectNode) codec.getMapper(playerWebSocketSession.format).readTree(parser);
+        }
+        webSocketEventProcessor.incomingEvent(
+                messageNode,
+                playerWebSocketSession.holder.room.getGame(),
+                playerWebSocketSession.userId,
+                playerWebSocketSession.sendMessage,
+                playerWebSocketSession.callbackEvent);
+    }
+
+    private String readEvent(PlayerWebSocketSession playerWebSocketSession, WebSocketMessage<?> message) throws IOException {
+        try (JsonParser parser = codec.createParser(message, playerWebSocketSession.format)) {
+            return moveToField(parser, EVENT_PROPERTY_NAME) ? parser.getValueAsString() : null;
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
+
+    private <T> T readData(PlayerWebSocketSession playerWebSocketSession,
+                           WebSocketMessage<?> message,
+                           ObjectReader reader) throws IOException {
+        try (JsonParser parser = codec.createParser(message, playerWebSocketSession.format)) {
+            return moveToField(parser, DATA_PROPERTY_NAME) ? reader.readValue(parser) : null;
+        }
+    }
+
+    private static boolean moveToField(JsonParser parser, String name) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            return false;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if (name.equals(field)) {
+                return true;
+            }
+            parser.skipChildren();
+        }
+        return false;
     }
 
     public void sendEvent(String code, String event) {
@@ -154,87 +607,99 @@ public class GameWebSocketHandler extends TextWebSocketHandler {
         if (roomWebSocketSessionsHolder == null) {
             return;
         }
+        sendEvent(roomWebSocketSessionsHolder, event);
+    }
+
+    private void sendEvent(RoomWebSocketSessionsHolder roomWebSocketSessionsHolder, String event) {
+        // Активностью считаются только действия клиентов, рассылки по тикам ее не продлевают
+        roomWebSocketSessionsHolder.room.updateLastActivity();
+        if (event.equals(GAME_STATE) && roomWebSocketSessionsHolder.ticker != null) {
+            // Состояние игры с тиками рассылается один раз за тик, сколько бы событий его ни запросило
+            roomWebSocketSessionsHolder.gameStateRequested.set(true);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            broadcastEvent(roomWebSocketSessionsHolder, event);
+        } finally {
+            metrics.eventSent(event, System.nanoTime() - start);
+        }
+    }
+
+    private void broadcastEvent(RoomWebSocketSessionsHolder roomWebSocketSessionsHolder, String event) {
+        if (event.equals(UPDATE_MEMBERS)) {
+            requestMembersUpdate(roomWebSocketSessionsHolder);
+            return;
+        }
+        // Отложенное обновление членов комнаты должно уйти раньше любого другого события
+        flushMembersUpdate(roomWebSocketSessionsHolder);
 
         List<PlayerWebSocketSession> playerWebSocketSessions = roomWebSocketSessionsHolder.playerWebSocketSessions;
-        Room<?> room = roomService.getRooms().get(code);
+        Room<?> room = roomWebSocketSessionsHolder.room;
         Game game = room.getGame();
 
         switch (event) {
-            case UPDATE_MEMBERS -> {
-                ObjectNode eventNode = mapper.createObjectNode();
-                eventNode.put(EVENT_PROPERTY_NAME, UPDATE_MEMBERS);
-                List<String> onlinePlayers = playerWebSocketSessions.stream()
-                        .map(playerSession -> playerSession.userId)
-                        .toList();
-                long spectatorsCount = room.getMembers().stream()
-                        .filter(m -> m.isSpectator() && onlinePlayers.contains(m.getUserId()))
-                        .count();
-                List<Member> members = room.getMembers().stream()
-                        .filter(m -> m.isPlayer() && onlinePlayers.contains(m.getUserId()))
-                        .toList();
-                ObjectNode dataNode = eventNode.putObject(DATA_PROPERTY_NAME);
-                dataNode.put("spectatorsCount", spectatorsCount);
-                dataNode.set("members", mapper.valueToTree(members));
-                for (PlayerWebSocketSession playerWebSocketSession : playerWebSocketSessions) {
-                    sendTextMessage(playerWebSocketSession, eventNode);
-                }
-            }
             case GAME_STATE -> {
+                boolean shared = webSocketEventProcessor.isGameStateShared(game);
+                // Каждое представление игры создается и кодируется один раз за рассылку
+                Map<String, OutgoingMessage> snapshots = new HashMap<>();
+                // Сессии, получившие одно и то же предыдущее состояние, получат один и тот же патч
+                Map<String, Map<JsonNode, OutgoingMessage>> patches = new HashMap<>();
                 for (PlayerWebSocketSession playerWebSocketSession : playerWebSocketSessions) {
-                    ObjectNode eventNode = mapper.createObjectNode();
-                    eventNode.put(EVENT_PROPERTY_NAME, GAME_STATE);
-                    JsonNode gameStateData = webSocketEventProcessor.createGameState(room.getGame(), playerWebSocketSession.userId);
-                    if (gameStateData != null) {
-                        eventNode.set(DATA_PROPERTY_NAME, gameStateData);
-                    }
-                    sendTextMessage(playerWebSocketSession, eventNode);
+                    String viewKey = shared ? SHARED_VIEW_KEY : getViewKey(game, playerWebSocketSession.userId);
+                    OutgoingMessage snapshot = snapshots.computeIfAbsent(viewKey, k -> new OutgoingMessage(
+                            codec, createGameStateNode(game, playerWebSocketSession.userId), !gameStateDiff));
+                    sendGameState(playerWebSocketSession, snapshot, patches.computeIfAbsent(viewKey, k -> new IdentityHashMap<>()));
                 }
+                log.trace("Game state of room {} created for {} views", room.getCode(), snapshots.size());
             }
             case START_GAME -> {
                 room.setGameStarted(true);
+                startTicks(roomWebSocketSessionsHolder);
 
                 // Выгнать всех наблюдателей из комнаты после старта игры
-                List<String> spectators = new ArrayList<>();
-                room.getMembers().stream()
-                        .filter(Member::isSpectator)
-                        .forEach(member -> spectators.add(member.getUserId()));
-                room.getMembers().removeIf(member -> spectators.contains(member.getUserId()));
+                List<String> spectators = room.removeSpectators().stream()
+                        .map(Member::getUserId)
+                        .toList();
                 // А также закрыть их сессии
                 playerWebSocketSessions.stream()
                         .filter(playerSession -> spectators.contains(playerSession.userId))
                         .forEach(this::closePlayerSession);
+                Map<String, OutgoingMessage> views = new HashMap<>();
                 for (PlayerWebSocketSession playerWebSocketSession : playerWebSocketSessions) {
-                    ObjectNode eventNode = mapper.createObjectNode();
-                    eventNode.put(EVENT_PROPERTY_NAME, START_GAME);
-                    JsonNode startGameData = webSocketEventProcessor.startGame(game, playerWebSocketSession.userId);
-                    if (startGameData != null) {
-                        eventNode.set(DATA_PROPERTY_NAME, startGameData);
-                    }
-                    sendTextMessage(playerWebSocketSession, eventNode);
+                    playerWebSocketSession.outboundQueue.offer(views.computeIfAbsent(
+                            getViewKey(game, playerWebSocketSession.userId),
+                            k -> createViewMessage(START_GAME, webSocketEventProcessor.startGame(game, playerWebSocketSession.userId))));
                 }
             }
             case RESTART_GAME -> {
                 room.setGameStarted(false);
+                stopTicks(roomWebSocketSessionsHolder);
+                Map<String, OutgoingMessage> views = new HashMap<>();
                 for (PlayerWebSocketSession playerWebSocketSession : playerWebSocketSessions) {
-                    ObjectNode eventNode = mapper.createObjectNode();
-                    eventNode.put(EVENT_PROPERTY_NAME, RESTART_GAME);
-                    JsonNode restartGameData = webSocketEventProcessor.restartGame(game, playerWebSocketSession.userId);
-                    if (restartGameData != null) {
-                        eventNode.set(DATA_PROPERTY_NAME, restartGameData);
-                    }
-                    sendTextMessage(playerWebSocketSession, eventNode);
+                    playerWebSocketSession.outboundQueue.offer(views.computeIfAbsent(
+                            getViewKey(game, playerWebSocketSession.userId),
+                            k -> createViewMessage(RESTART_GAME, webSocketEventProcessor.restartGame(game, playerWebSocketSession.userId))));
                 }
             }
             default -> {
-                for (PlayerWebSocketSession playerWebSocketSession : playerWebSocketSessions) {
-                    ObjectNode eventNode = webSocketEventProcessor.outgoingEvent(event, game, playerWebSocketSession.userId);
-                    if (eventNode != null) {
-                        sendTextMessage(playerWebSocketSession, eventNode);
+                if (webSocketEventProcessor.isOutgoingEventShared(event, game)) {
+                    if (!playerWebSocketSessions.isEmpty()) {
+                        ObjectNode eventNode = webSocketEventProcessor.outgoingEvent(event, game, playerWebSocketSessions.get(0).userId);
+                        if (eventNode != null) {
+                            broadcast(playerWebSocketSessions, new OutgoingMessage(codec, eventNode));
+                        }
+                    }
+                } else {
+                    for (PlayerWebSocketSession playerWebSocketSession : playerWebSocketSessions) {
+                        ObjectNode eventNode = webSocketEventProcessor.outgoingEvent(event, game, playerWebSocketSession.userId);
+                        if (eventNode != null) {
+                            sendMessage(playerWebSocketSession, eventNode);
+                        }
                     }
                 }
             }
         }
-        room.setLastActivity(LocalDateTime.now());
     }
 
     @Override
@@ -245,48 +710,103 @@ public class GameWebSocketHandler extends TextWebSocketHandler {
 
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
-        String token = (String) session.getAttributes().get("token");
-        String userId = token.split(":")[0];
-        String code = (String) session.getAttributes().get("code");
-        cleanSessionResources(session, userId);
-        log.debug("Websocket connection for user id {} in room {} closed with status {}", userId, code, status);
+        PlayerWebSocketSession playerWebSocketSession =
+                (PlayerWebSocketSession) session.getAttributes().remove(PLAYER_SESSION_ATTRIBUTE);
+        if (playerWebSocketSession == null) {
+            log.debug("Not established websocket connection {} closed with status {}", session.getId(), status);
+            return;
+        }
+        // Ожидающая переподключения сессия уже без соединения и не считается открытой
+        openSessionsCount.decrementAndGet();
+        if (isResumable(playerWebSocketSession, status)) {
+            roomExecutor.execute(playerWebSocketSession.holder.room, () -> suspendSession(playerWebSocketSession));
+        } else {
+            roomExecutor.execute(playerWebSocketSession.holder.room, () -> cleanSessionResources(playerWebSocketSession));
+        }
+        log.debug("Websocket connection for user id {} in room {} closed with status {}",
+                playerWebSocketSession.userId, playerWebSocketSession.holder.room.getCode(), status);
+    }
+
+    private boolean isResumable(PlayerWebSocketSession playerWebSocketSession, CloseStatus status) {
+        if (resumeGracePeriod.isZero() || scheduler == null || playerWebSocketSession.closedByServer) {
+            return false;
+        }
+        // Клиент, закрывший соединение сам, уходит из комнаты сразу
+        int code = status.getCode();
+        return code != CloseStatus.NORMAL.getCode()
+                && code != CloseStatus.GOING_AWAY.getCode()
+                && code != CloseStatus.SESSION_NOT_RELIABLE.getCode();
+    }
+
+    private void suspendSession(PlayerWebSocketSession playerWebSocketSession) {
+        RoomWebSocketSessionsHolder roomWebSocketSessionsHolder = playerWebSocketSession.holder;
+        Room<?> room = roomWebSocketSessionsHolder.room;
+        String userId = playerWebSocketSession.userId;
+        playerWebSocketSession.outboundQueue.suspend(replayBufferSize);
+        playerWebSocketSession.resumeTimeout = scheduler.schedule(() -> roomExecutor.execute(room, () -> {
+            if (roomWebSocketSessionsHolder.suspendedSessions.remove(userId, playerWebSocketSession)) {
+                log.debug("Websocket session of user {} in room {} was not resumed", userId, room.getCode());
+                cleanSessionResources(playerWebSocketSession);
+            }
+        }), resumeGracePeriod.toNanos(), TimeUnit.NANOSECONDS);
+        PlayerWebSocketSession previous = roomWebSocketSessionsHolder.suspendedSessions.put(userId, playerWebSocketSession);
+        // Одновременно ожидать переподключения может только одна сессия пользователя
+        if (previous != null) {
+            previous.resumeTimeout.cancel(false);
+            roomWebSocketSessionsHolder.playerWebSocketSessions.remove(previous);
+        }
+        log.debug("Websocket session of user {} in room {} suspended for {}", userId, room.getCode(), resumeGracePeriod);
     }
 
     public void createNewSessionsListForRoom(String webSocketToken, String code) {
-        roomSessionsLock.lock();
-        try {
-            webSocketTokenRoomCodeMap.put(webSocketToken, code);
-            roomSessionsMap.put(code, new RoomWebSocketSessionsHolder());
-        } finally {
-            roomSessionsLock.unlock();
+        Room<?> room = roomService.getRooms().get(code);
+        if (room == null) {
+            log.warn("Room {} removed before sessions list creation", code);
+            return;
+        }
+        RoomWebSocketSessionsHolder roomWebSocketSessionsHolder = new RoomWebSocketSessionsHolder(room, webSocketToken);
+        if (roomRateLimit > 0) {
+            roomWebSocketSessionsHolder.rateLimit = new TokenBucket(roomRateLimit, roomRateLimitBurst);
+        }
+        // Сначала holder, затем токен: подключение по токену всегда найдет holder комнаты
+        RoomWebSocketSessionsHolder previous = roomSessionsMap.put(code, roomWebSocketSessionsHolder);
+        if (previous != null) {
+            webSocketTokenRoomCodeMap.remove(previous.webSocketToken, code);
+            stopTicks(previous);
+        }
+        webSocketTokenRoomCodeMap.put(webSocketToken, code);
+        // Комната, восстановленная с начатой игрой, продолжает тики
+        if (room.isGameStarted()) {
+            roomExecutor.execute(room, () -> startTicks(roomWebSocketSessionsHolder));
         }
         log.debug("New sessions list for room {} created", code);
     }
 
     public void removeSessionsListForRoom(String code) {
-        RoomWebSocketSessionsHolder roomWebSocketSessionsHolder;
-        roomSessionsLock.lock();
-        try {
-            roomWebSocketSessionsHolder = roomSessionsMap.get(code);
-            roomSessionsMap.remove(code);
-            log.trace("WebSocket sessions holder removed for room {}", code);
-
-            String wsToken = null;
-            for (Map.Entry<String, String> pair : webSocketTokenRoomCodeMap.entrySet()) {
-                if (pair.getValue().equals(code)) {
-                    wsToken = pair.getKey();
-                    break;
-                }
-            }
-            if (wsToken != null) {
-                webSocketTokenRoomCodeMap.remove(wsToken);
-                log.trace("WebSocket token removed for room {}", code);
-            }
-        } finally {
-            roomSessionsLock.unlock();
+        RoomWebSocketSessionsHolder roomWebSocketSessionsHolder = roomSessionsMap.remove(code);
+        if (roomWebSocketSessionsHolder != null) {
+            removeSessionsHolder(roomWebSocketSessionsHolder);
         }
-        if (roomWebSocketSessionsHolder == null) {
-            return;
+    }
+
+    /**
+     * Removes sessions list only if it belongs to the given room,
+     * so a new room with the same code is not affected.
+     */
+    public void removeSessionsListForRoom(Room<?> room) {
+        RoomWebSocketSessionsHolder roomWebSocketSessionsHolder = roomSessionsMap.get(room.getCode());
+        if (roomWebSocketSessionsHolder != null && roomWebSocketSessionsHolder.room == room
+                && roomSessionsMap.remove(room.getCode(), roomWebSocketSessionsHolder)) {
+            removeSessionsHolder(roomWebSocketSessionsHolder);
+        }
+    }
+
+    private void removeSessionsHolder(RoomWebSocketSessionsHolder roomWebSocketSessionsHolder) {
+        String code = roomWebSocketSessionsHolder.room.getCode();
+        stopTicks(roomWebSocketSessionsHolder);
+        log.trace("WebSocket sessions holder removed for room {}", code);
+        if (webSocketTokenRoomCodeMap.remove(roomWebSocketSessionsHolder.webSocketToken, code)) {
+            log.trace("WebSocket token removed for room {}", code);
         }
         for (PlayerWebSocketSession playerWebSocketSession : roomWebSocketSessionsHolder.playerWebSocketSessions) {
             closePlayerSession(playerWebSocketSession);
@@ -294,45 +814,290 @@ public class GameWebSocketHandler extends TextWebSocketHandler {
         log.debug("Sessions list for room {} removed", code);
     }
 
-    private void sendTextMessage(PlayerWebSocketSession playerWebSocketSession, JsonNode payload) {
-        sendTextMessage(playerWebSocketSession.webSocketSession, playerWebSocketSession.lock, payload);
+    private void startTicks(RoomWebSocketSessionsHolder roomWebSocketSessionsHolder) {
+        Room<?> room = roomWebSocketSessionsHolder.room;
+        Duration interval = roomService.getTickInterval(room);
+        if (tickScheduler == null || interval.isZero() || interval.isNegative()) {
+            return;
+        }
+        stopTicks(roomWebSocketSessionsHolder);
+        roomWebSocketSessionsHolder.lastTickAt = System.nanoTime();
+        // Тик выполняется через исполнитель комнаты, поэтому в любом режиме не пересекается с другими ее задачами
+        roomWebSocketSessionsHolder.ticker = tickScheduler.start(interval, () -> {
+            // Пока предыдущий тик комнаты не выполнен, новый не ставится в очередь
+            if (!roomWebSocketSessionsHolder.tickPending.compareAndSet(false, true)) {
+                metrics.ticksOverrun(1);
+                return;
+            }
+            roomExecutor.execute(room, () -> {
+                try {
+                    tick(roomWebSocketSessionsHolder);
+                } finally {
+                    roomWebSocketSessionsHolder.tickPending.set(false);
+                }
+            });
+        });
+        log.debug("Game ticks of room {} started with interval {}", room.getCode(), interval);
+    }
+
+    private void stopTicks(RoomWebSocketSessionsHolder roomWebSocketSessionsHolder) {
+        GameTickScheduler.Ticker ticker = roomWebSocketSessionsHolder.ticker;
+        if (ticker != null) {
+            ticker.stop();
+            roomWebSocketSessionsHolder.ticker = null;
+            log.debug("Game ticks of room {} stopped", roomWebSocketSessionsHolder.room.getCode());
+        }
+    }
+
+    private void tick(RoomWebSocketSessionsHolder roomWebSocketSessionsHolder) {
+        if (roomWebSocketSessionsHolder.ticker == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        // Время считается от фактического предыдущего тика, так что пропущенные тики не теряют время игры
+        long deltaNanos = start - roomWebSocketSessionsHolder.lastTickAt;
+        roomWebSocketSessionsHolder.lastTickAt = start;
+        boolean changed = roomService.tickGame(roomWebSocketSessionsHolder.room, deltaNanos);
+        boolean requested = roomWebSocketSessionsHolder.gameStateRequested.getAndSet(false);
+        if (changed || requested) {
+            broadcastEvent(roomWebSocketSessionsHolder, GAME_STATE);
+            metrics.eventSent(GAME_STATE, System.nanoTime() - start);
+        }
+        metrics.tickCompleted(System.nanoTime() - start);
+    }
+
+    private void requestMembersUpdate(RoomWebSocketSessionsHolder roomWebSocketSessionsHolder) {
+        if (scheduler == null || membersUpdateDelay.isZero()) {
+            sendMembersUpdate(roomWebSocketSessionsHolder);
+            return;
+        }
+        synchronized (roomWebSocketSessionsHolder) {
+            long now = System.nanoTime();
+            if (roomWebSocketSessionsHolder.membersUpdate == null
+                    || !roomWebSocketSessionsHolder.membersUpdate.cancel(false)) {
+                roomWebSocketSessionsHolder.membersUpdateRequestedAt = now;
+            }
+            long deadline = roomWebSocketSessionsHolder.membersUpdateRequestedAt + membersUpdateMaxDelay.toNanos();
+            long delay = Math.max(0, Math.min(membersUpdateDelay.toNanos(), deadline - now));
+            long generation = ++roomWebSocketSessionsHolder.membersUpdateGeneration;
+            roomWebSocketSessionsHolder.membersUpdate = scheduler.schedule(() -> roomExecutor.execute(roomWebSocketSessionsHolder.room, () -> {
+                synchronized (roomWebSocketSessionsHolder) {
+                    if (roomWebSocketSessionsHolder.membersUpdateGeneration != generation) {
+                        return;
+                    }
+                    roomWebSocketSessionsHolder.membersUpdate = null;
+                }
+                sendMembersUpdate(roomWebSocketSessionsHolder);
+            }), delay, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void flushMembersUpdate(RoomWebSocketSessionsHolder roomWebSocketSessionsHolder) {
+        synchronized (roomWebSocketSessionsHolder) {
+            if (roomWebSocketSessionsHolder.membersUpdate == null) {
+                return;
+            }
+            roomWebSocketSessionsHolder.membersUpdate.cancel(false);
+            roomWebSocketSessionsHolder.membersUpdate = null;
+            roomWebSocketSessionsHolder.membersUpdateGeneration++;
+        }
+        sendMembersUpdate(roomWebSocketSessionsHolder);
+    }
+
+    private void sendMembersUpdate(RoomWebSocketSessionsHolder roomWebSocketSessionsHolder) {
+        Room<?> room = roomWebSocketSessionsHolder.room;
+        List<PlayerWebSocketSession> playerWebSocketSessions = roomWebSocketSessionsHolder.playerWebSocketSessions;
+
+        Set<String> onlinePlayers = playerWebSocketSessions.stream()
+                .map(playerSession -> playerSession.userId)
+                .collect(Collectors.toSet());
+        long spectatorsCount;
+        Map<Integer, JsonNode> members = new LinkedHashMap<>();
+        // Изменения членов комнаты идут под ее монитором: пачка изменений не попадет в снимок наполовину
+        synchronized (room) {
+            spectatorsCount = room.getMembers().stream()
+                    .filter(m -> m.isSpectator() && onlinePlayers.contains(m.getUserId()))
+                    .count();
+            room.getMembers().stream()
+                    .filter(m -> m.isPlayer() && onlinePlayers.contains(m.getUserId()))
+                    .forEach(m -> members.put(m.getId(), mapper.valueToTree(m)));
+        }
+
+        synchronized (roomWebSocketSessionsHolder) {
+            if (memberDeltas) {
+                sendMembersDelta(roomWebSocketSessionsHolder, members, spectatorsCount);
+            }
+            roomWebSocketSessionsHolder.sentMembers = members;
+            roomWebSocketSessionsHolder.sentSpectatorsCount = spectatorsCount;
+            if (!memberDeltas) {
+                roomWebSocketSessionsHolder.membersRevision++;
+                ObjectNode eventNode = createMembersSnapshotNode(roomWebSocketSessionsHolder);
+                broadcast(playerWebSocketSessions, new OutgoingMessage(codec, eventNode));
+            }
+        }
+    }
+
+    private void sendMembersDelta(RoomWebSocketSessionsHolder roomWebSocketSessionsHolder,
+                                  Map<Integer, JsonNode> members,
+                                  long spectatorsCount) {
+        Map<Integer, JsonNode> sentMembers = roomWebSocketSessionsHolder.sentMembers;
+        for (Integer id : sentMembers.keySet()) {
+            if (!members.containsKey(id)) {
+                ObjectNode dataNode = mapper.createObjectNode();
+                dataNode.put("id", id);
+                sendMembersDeltaEvent(roomWebSocketSessionsHolder, MEMBER_REMOVED, dataNode);
+            }
+        }
+        for (Map.Entry<Integer, JsonNode> member : members.entrySet()) {
+            JsonNode sentMember = sentMembers.get(member.getKey());
+            if (sentMember == null || !sentMember.equals(member.getValue())) {
+                ObjectNode dataNode = mapper.createObjectNode();
+                dataNode.set("member", member.getValue());
+                sendMembersDeltaEvent(roomWebSocketSessionsHolder, sentMember == null ? MEMBER_ADDED : MEMBER_CHANGED, dataNode);
+            }
+        }
+        if (roomWebSocketSessionsHolder.sentSpectatorsCount != spectatorsCount) {
+            ObjectNode dataNode = mapper.createObjectNode();
+            dataNode.put("spectatorsCount", spectatorsCount);
+            sendMembersDeltaEvent(roomWebSocketSessionsHolder, SPECTATORS_COUNT_CHANGED, dataNode);
+        }
+    }
+
+    private void sendMembersDeltaEvent(RoomWebSocketSessionsHolder roomWebSocketSessionsHolder,
+                                       String event,
+                                       ObjectNode dataNode) {
+        dataNode.put("revision", ++roomWebSocketSessionsHolder.membersRevision);
+        ObjectNode eventNode = mapper.createObjectNode();
+        eventNode.put(EVENT_PROPERTY_NAME, event);
+        eventNode.set(DATA_PROPERTY_NAME, dataNode);
+        // Изменения нельзя схлопывать в очереди, пропуск ревизии клиент обнаружит сам
+        broadcast(roomWebSocketSessionsHolder.playerWebSocketSessions, new OutgoingMessage(codec, eventNode, false));
+    }
+
+    private void sendMembersSnapshot(RoomWebSocketSessionsHolder roomWebSocketSessionsHolder,
+                                     OutboundMessageQueue outboundQueue) {
+        synchronized (roomWebSocketSessionsHolder) {
+            outboundQueue.offer(new OutgoingMessage(codec, createMembersSnapshotNode(roomWebSocketSessionsHolder)));
+        }
+    }
+
+    private ObjectNode createMembersSnapshotNode(RoomWebSocketSessionsHolder roomWebSocketSessionsHolder) {
+        ObjectNode eventNode = mapper.createObjectNode();
+        eventNode.put(EVENT_PROPERTY_NAME, UPDATE_MEMBERS);
+        ObjectNode dataNode = eventNode.putObject(DATA_PROPERTY_NAME);
+        dataNode.put("revision", roomWebSocketSessionsHolder.membersRevision);
+        dataNode.put("spectatorsCount", roomWebSocketSessionsHolder.sentSpectatorsCount);
+        dataNode.putArray("members").addAll(roomWebSocketSessionsHolder.sentMembers.values());
+        return eventNode;
+    }
+
+    private String getViewKey(Game game, String userId) {
+        String viewKey = webSocketEventProcessor.getViewKey(game, userId);
+        return viewKey != null ? viewKey : userId;
     }
 
-    private void sendTextMessage(WebSocketSession webSocketSession, Lock lock, JsonNode payload) {
-        lock.lock();
+    private OutgoingMessage createViewMessage(String event, JsonNode data) {
+        ObjectNode eventNode = mapper.createObjectNode();
+        eventNode.put(EVENT_PROPERTY_NAME, event);
+        if (data != null) {
+            eventNode.set(DATA_PROPERTY_NAME, data);
+        }
+        return new OutgoingMessage(codec, eventNode);
+    }
+
+    private ObjectNode createGameStateNode(Game game, String userId) {
+        ObjectNode eventNode = mapper.createObjectNode();
+        eventNode.put(EVENT_PROPERTY_NAME, GAME_STATE);
+        JsonNode gameStateData = webSocketEventProcessor.createGameState(game, userId);
+        if (gameStateData != null) {
+            eventNode.set(DATA_PROPERTY_NAME, gameStateData);
+        }
+        return eventNode;
+    }
+
+    private void sendGameState(PlayerWebSocketSession playerWebSocketSession,
+                               OutgoingMessage snapshot,
+                               Map<JsonNode, OutgoingMessage> patches) {
+        if (!gameStateDiff) {
+            playerWebSocketSession.outboundQueue.offer(snapshot);
+            return;
+        }
+        JsonNode gameState = snapshot.getPayload().get(DATA_PROPERTY_NAME);
+        synchronized (playerWebSocketSession) {
+            // Состояние для замененной сессии считается от последнего состояния новой
+            if (playerWebSocketSession.resumedSession != null) {
+                sendGameState(playerWebSocketSession.resumedSession, snapshot, patches);
+                return;
+            }
+            JsonNode lastGameState = playerWebSocketSession.lastGameState;
+            long droppedCount = playerWebSocketSession.outboundQueue.getDroppedCount();
+            OutgoingMessage message = snapshot;
+            // Полное состояние после переподключения, серии патчей или потери сообщений из очереди
+            if (lastGameState != null && gameState != null
+                    && playerWebSocketSession.gameStatePatches < gameStateSnapshotInterval
+                    && playerWebSocketSession.droppedCount == droppedCount) {
+                message = patches != null
+                        ? patches.computeIfAbsent(lastGameState, s -> createGameStatePatch(s, snapshot, playerWebSocketSession.format))
+                        : createGameStatePatch(lastGameState, snapshot, playerWebSocketSession.format);
+            }
+            playerWebSocketSession.gameStatePatches = message == snapshot ? 0 : playerWebSocketSession.gameStatePatches + 1;
+            playerWebSocketSession.lastGameState = gameState;
+            playerWebSocketSession.droppedCount = droppedCount;
+            playerWebSocketSession.outboundQueue.offer(message);
+        }
+    }
+
+    private OutgoingMessage createGameStatePatch(JsonNode lastGameState, OutgoingMessage snapshot, WireFormat format) {
+        ObjectNode eventNode = mapper.createObjectNode();
+        eventNode.put(EVENT_PROPERTY_NAME, GAME_STATE_PATCH);
+        eventNode.set(DATA_PROPERTY_NAME,
+                JsonPatch.diff(lastGameState, snapshot.getPayload().get(DATA_PROPERTY_NAME), mapper.getNodeFactory()));
+        OutgoingMessage patch = new OutgoingMessage(codec, eventNode, false);
         try {
-            String eventJson = mapper.writeValueAsString(payload);
-            TextMessage playersMessage = new TextMessage(eventJson);
-            webSocketSession.sendMessage(playersMessage);
+            // Оба сообщения кодируются один раз, выбранное отправляется без повторного кодирования
+            if (patch.getMessage(format, false).getPayloadLength() < snapshot.getMessage(format, false).getPayloadLength()) {
+                return patch;
+            }
         } catch (IOException e) {
-            throw new RuntimeException(e);
-        } finally {
-            lock.unlock();
+            log.error("Game state patch encoding error: {}", e.getLocalizedMessage());
         }
+        return snapshot;
     }
 
-    private void cleanSessionResources(WebSocketSession session, String userId) {
-        String code = (String) session.getAttributes().get("code");
-        log.trace("Cleaning websocket session resources for user {} in room {}", userId, code);
+    private void broadcast(List<PlayerWebSocketSession> playerWebSocketSessions, OutgoingMessage message) {
+        for (PlayerWebSocketSession playerWebSocketSession : playerWebSocketSessions) {
+            playerWebSocketSession.outboundQueue.offer(message);
+        }
+    }
 
-        sessionLockMap.remove(session.getId());
+    private void sendMessage(PlayerWebSocketSession playerWebSocketSession, JsonNode payload) {
+        sendMessage(playerWebSocketSession.outboundQueue, payload);
+    }
 
-        RoomWebSocketSessionsHolder roomWebSocketSessionsHolder = roomSessionsMap.get(code);
-        if (roomWebSocketSessionsHolder == null) {
+    private void sendMessage(OutboundMessageQueue outboundQueue, JsonNode payload) {
+        outboundQueue.offer(new OutgoingMessage(codec, payload));
+    }
+
+    private void cleanSessionResources(PlayerWebSocketSession playerWebSocketSession) {
+        String userId = playerWebSocketSession.userId;
+        RoomWebSocketSessionsHolder roomWebSocketSessionsHolder = playerWebSocketSession.holder;
+        Room<?> room = roomWebSocketSessionsHolder.room;
+        String code = room.getCode();
+        log.trace("Cleaning websocket session resources for user {} in room {}", userId, code);
+
+        if (roomSessionsMap.get(code) != roomWebSocketSessionsHolder) {
             log.trace("WebSocket sessions holder already removed for room {}", code);
             return;
         }
         roomWebSocketSessionsHolder.lock.lock();
         try {
-            roomWebSocketSessionsHolder.playerWebSocketSessions
-                    .removeIf(e -> e.webSocketSession.getId().equals(session.getId()));
+            roomWebSocketSessionsHolder.playerWebSocketSessions.remove(playerWebSocketSession);
             log.trace("Remove websocket session from holder for user {} in room {}", userId, code);
-            Room<?> room = roomService.getRooms().get(code);
             Member member = room.getMemberByUserId(userId);
             // Если игра не начата, то выгнать вылетевшего из комнаты
             if (!room.isGameStarted()) {
                 log.trace("Kick user {} from room {} because game not started", userId, code);
-                room.getMembers().removeIf(m -> m.getUserId().equals(userId));
+                room.removeMember(userId);
             }
             // Если вылетевший был админом, то...
             if (member != null && member.isAdmin()) {
@@ -351,8 +1116,8 @@ public class GameWebSocketHandler extends TextWebSocketHandler {
                     log.trace("User {} was admin in room {}, there is no another players, destroy room",
                             userId, code);
                     // ... или грохнуть всю комнату
-                    roomService.getRooms().remove(code);
-                    removeSessionsListForRoom(code);
+                    roomService.removeRoom(code, room);
+                    removeSessionsListForRoom(room);
                 }
             }
         } finally {
@@ -360,13 +1125,18 @@ public class GameWebSocketHandler extends TextWebSocketHandler {
         }
         log.debug("WebSocket session resources for user {} cleared", userId);
         // Обновить состояние всех членов комнаты из-за отключившегося
-        sendEvent(code, UPDATE_MEMBERS);
+        sendEvent(roomWebSocketSessionsHolder, UPDATE_MEMBERS);
     }
 
     private void closePlayerSession(PlayerWebSocketSession playerSession) {
+        closePlayerSession(playerSession, CloseStatus.NORMAL);
+    }
+
+    private void closePlayerSession(PlayerWebSocketSession playerSession, CloseStatus status) {
+        playerSession.closedByServer = true;
         try {
             if (playerSession.webSocketSession.isOpen()) {
-                playerSession.webSocketSession.close(CloseStatus.NORMAL);
+                playerSession.webSocketSession.close(status);
             }
         } catch (IOException e) {
             log.error("Websocket session close error: {}", e.getLocalizedMessage());
@@ -375,14 +1145,55 @@ public class GameWebSocketHandler extends TextWebSocketHandler {
 
     @RequiredArgsConstructor
     private static class RoomWebSocketSessionsHolder {
+        final Room<?> room;
+        final String webSocketToken;
         ReentrantLock lock = new ReentrantLock();
         List<PlayerWebSocketSession> playerWebSocketSessions = new CopyOnWriteArrayList<>();
+        // Отключившиеся сессии, ожидающие переподключения, по id пользователя
+        Map<String, PlayerWebSocketSession> suspendedSessions = new ConcurrentHashMap<>();
+        // Guarded by holder monitor
+        ScheduledFuture<?> membersUpdate;
+        long membersUpdateRequestedAt;
+        long membersUpdateGeneration;
+        Map<Integer, JsonNode> sentMembers = Map.of();
+        long sentSpectatorsCount;
+        long membersRevision;
+        TokenBucket rateLimit;
+        // Тики игры, используются в контексте выполнения комнаты
+        volatile GameTickScheduler.Ticker ticker;
+        final AtomicBoolean tickPending = new AtomicBoolean();
+        long lastTickAt;
+        final AtomicBoolean gameStateRequested = new AtomicBoolean();
+    }
+
+    @FunctionalInterface
+    private interface IncomingMessageHandler {
+        void handle(PlayerWebSocketSession playerWebSocketSession, WebSocketMessage<?> message) throws Exception;
+    }
+
+    /**
+     * @param gameEvent whether errors of the handler are sent to client as {@code ERROR} event
+     *                  and the room activity is updated
+     */
+    private record IncomingEventRoute(IncomingMessageHandler handler, boolean gameEvent) {
     }
 
     @RequiredArgsConstructor
     private static class PlayerWebSocketSession {
-        ReentrantLock lock = new ReentrantLock();
         final String userId;
         final WebSocketSession webSocketSession;
+        final WireFormat format;
+        final OutboundMessageQueue outboundQueue;
+        final RoomWebSocketSessionsHolder holder;
+        Consumer<JsonNode> sendMessage;
+        Consumer<String> callbackEvent;
+        // Состояние игры, отправленное последним, охраняется монитором сессии
+        JsonNode lastGameState;
+        int gameStatePatches;
+        long droppedCount;
+        PlayerWebSocketSession resumedSession;
+        volatile boolean closedByServer;
+        ScheduledFuture<?> resumeTimeout;
+        TokenBucket rateLimit;
     }
 }
@@ -0,0 +1,78 @@
+package ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.websocket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Builds <a href="https://www.rfc-editor.org/rfc/rfc6902">RFC 6902</a> JSON Patch
+ * between two json trees.
+ */
+final class JsonPatch {
+
+    private JsonPatch() {
+    }
+
+    static ArrayNode diff(JsonNode source, JsonNode target, JsonNodeFactory nodeFactory) {
+        ArrayNode patch = nodeFactory.arrayNode();
+        diff(source, target, "", patch);
+        return patch;
+    }
+
+    private static void diff(JsonNode source, JsonNode target, String path, ArrayNode patch) {
+        if (source.equals(target)) {
+            return;
+        }
+        if (source.isObject() && target.isObject()) {
+            Iterator<Map.Entry<String, JsonNode>> fields = source.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                String fieldPath = path + "/" + escape(field.getKey());
+                JsonNode targetValue = target.get(field.getKey());
+                if (targetValue == null) {
+                    addOperation(patch, "remove", fieldPath, null);
+                } else {
+                    diff(field.getValue(), targetValue, fieldPath, patch);
+                }
+            }
+            fields = target.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                if (!source.has(field.getKey())) {
+                    addOperation(patch, "add", path + "/" + escape(field.getKey()), field.getValue());
+                }
+            }
+        } else if (source.isArray() && target.isArray()) {
+            int common = Math.min(source.size(), target.size());
+            for (int i = 0; i < common; i++) {
+                diff(source.get(i), target.get(i), path + "/" + i, patch);
+            }
+            // Удаление с конца, чтобы индексы оставшихся элементов не сдвигались
+            for (int i = source.size() - 1; i >= common; i--) {
+                addOperation(patch, "remove", path + "/" + i, null);
+            }
+            for (int i = common; i < target.size(); i++) {
+                addOperation(patch, "add", path + "/-", target.get(i));
+            }
+        } else {
+            addOperation(patch, "replace", path, target);
+        }
+    }
+
+    private static void addOperation(ArrayNode patch, String op, String path, JsonNode value) {
+        ObjectNode operation = patch.addObject();
+        operation.put("op", op);
+        operation.put("path", path);
+        if (value != null) {
+            operation.set("value", value);
+        }
+    }
+
+    private static String escape(String name) {
+        return name.replace("~", "~0").replace("/", "~1");
+    }
+}
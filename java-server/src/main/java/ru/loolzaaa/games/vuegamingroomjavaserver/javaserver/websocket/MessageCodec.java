@@ -0,0 +1,122 @@
+package ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.websocket;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+
+/**
+ * Encodes and decodes websocket messages in every {@link WireFormat}
+ * with the same mapper configuration.
+ */
+class MessageCodec {
+
+    static final int DEFLATER_POOL_SIZE = Runtime.getRuntime().availableProcessors();
+
+    // Нативные потоки zlib берутся из пула, а не привязываются к потокам: писатели могут быть виртуальными
+    private final BlockingQueue<Deflater> deflaters = new ArrayBlockingQueue<>(DEFLATER_POOL_SIZE);
+
+    private final ObjectMapper[] mappers = new ObjectMapper[WireFormat.values().length];
+
+    @Getter
+    private final CompressionStats compressionStats = new CompressionStats();
+
+    @Setter
+    private int compressionThreshold = 1024;
+
+    MessageCodec(ObjectMapper mapper) {
+        mappers[WireFormat.JSON.ordinal()] = mapper;
+        mappers[WireFormat.CBOR.ordinal()] = mapper.copyWith(new CBORFactory());
+        mappers[WireFormat.SMILE.ordinal()] = mapper.copyWith(new SmileFactory());
+    }
+
+    ObjectMapper getMapper(WireFormat format) {
+        return mappers[format.ordinal()];
+    }
+
+    WebSocketMessage<?> encode(JsonNode payload, WireFormat format) throws IOException {
+        return wrap(getMapper(format).writeValueAsBytes(payload), format);
+    }
+
+    WebSocketMessage<?> wrap(byte[] bytes, WireFormat format) {
+        return format == WireFormat.JSON ? new TextMessage(bytes) : new BinaryMessage(bytes);
+    }
+
+    /**
+     * Compresses encoded message to zlib stream in binary frame, if it is not smaller than threshold.
+     * Zlib stream always starts with {@code 0x78} byte, so client can tell it from CBOR and Smile frames.
+     */
+    WebSocketMessage<?> compress(WebSocketMessage<?> message, String event) {
+        byte[] bytes = message instanceof TextMessage textMessage
+                ? textMessage.asBytes()
+                : toBytes(((BinaryMessage) message).getPayload());
+        if (bytes.length < compressionThreshold) {
+            return message;
+        }
+        long start = System.nanoTime();
+        Deflater deflater = deflaters.poll();
+        if (deflater == null) {
+            deflater = new Deflater();
+        }
+        byte[] compressed;
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2);
+            byte[] buffer = new byte[Math.min(bytes.length, 8192)];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                out.write(buffer, 0, length);
+            }
+            compressed = out.toByteArray();
+        } finally {
+            deflater.reset();
+            // Лишние экземпляры сверх пула освобождаются сразу, не дожидаясь Cleaner
+            if (!deflaters.offer(deflater)) {
+                deflater.end();
+            }
+        }
+        compressionStats.record(event, bytes.length, compressed.length, System.nanoTime() - start);
+        return compressed.length < bytes.length ? new BinaryMessage(compressed) : message;
+    }
+
+    int getPooledDeflatersCount() {
+        return deflaters.size();
+    }
+
+    JsonParser createParser(WebSocketMessage<?> message, WireFormat format) throws IOException {
+        ObjectMapper mapper = getMapper(format);
+        if (message instanceof BinaryMessage binaryMessage) {
+            ByteBuffer buffer = binaryMessage.getPayload();
+            if (buffer.hasArray()) {
+                return mapper.getFactory().createParser(
+                        buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            }
+            return mapper.getFactory().createParser(toBytes(buffer));
+        }
+        return mapper.getFactory().createParser(((TextMessage) message).getPayload());
+    }
+
+    private static byte[] toBytes(ByteBuffer buffer) {
+        if (buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.position() == 0
+                && buffer.remaining() == buffer.array().length) {
+            return buffer.array();
+        }
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+}
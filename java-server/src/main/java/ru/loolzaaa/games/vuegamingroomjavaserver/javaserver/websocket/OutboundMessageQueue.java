@@ -0,0 +1,333 @@
+package ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.websocket;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.metrics.GameServerMetrics;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+
+/**
+ * Bounded queue of outgoing messages for one websocket session.
+ * <p>
+ * Messages are sent by a single writer task at a time, so the thread
+ * that enqueues a message never waits for a slow client.
+ */
+class OutboundMessageQueue implements Runnable {
+
+    private static final Logger log = LogManager.getLogger(OutboundMessageQueue.class);
+
+    private final WebSocketSession webSocketSession;
+
+    private final WireFormat format;
+
+    private final boolean compression;
+
+    private final Executor executor;
+
+    private final int capacity;
+
+    private final OverflowPolicy overflowPolicy;
+
+    private final GameServerMetrics metrics;
+
+    private final Deque<OutgoingMessage> messages = new ArrayDeque<>();
+
+    // Последнее вытесненное при переполнении сообщение каждого состояния клиента, отправляется после опустошения очереди
+    private final Map<String, OutgoingMessage> pendingStates = new LinkedHashMap<>();
+
+    private boolean draining;
+
+    private long droppedCount;
+
+    // Ненулевая емкость буфера повтора, пока сессия ожидает переподключения
+    private int replayCapacity;
+
+    private boolean replayOverflow;
+
+    private OutboundMessageQueue resumedQueue;
+
+    private CloseStatus closeStatus;
+
+    OutboundMessageQueue(WebSocketSession webSocketSession,
+                         WireFormat format,
+                         boolean compression,
+                         Executor executor,
+                         int capacity,
+                         OverflowPolicy overflowPolicy,
+                         GameServerMetrics metrics) {
+        this.webSocketSession = webSocketSession;
+        this.format = format;
+        this.compression = compression;
+        this.executor = executor;
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+        this.metrics = metrics;
+    }
+
+    void offer(OutgoingMessage message) {
+        boolean startDrain;
+        boolean disconnect = false;
+        OutboundMessageQueue forwardQueue;
+        synchronized (messages) {
+            if (closeStatus != null) {
+                return;
+            }
+            forwardQueue = resumedQueue;
+            if (forwardQueue == null && replayCapacity > 0) {
+                bufferForReplay(message);
+                return;
+            }
+        }
+        if (forwardQueue != null) {
+            forwardQueue.offer(message);
+            return;
+        }
+        synchronized (messages) {
+            boolean queued = false;
+            if (messages.size() >= capacity) {
+                boolean removed = false;
+                if (overflowPolicy == OverflowPolicy.COALESCE && message.isCoalescible()) {
+                    queued = replaceSameEvent(message);
+                    removed = queued;
+                }
+                if (!removed && overflowPolicy != OverflowPolicy.DISCONNECT) {
+                    OutgoingMessage oldest = removeOldestDroppable();
+                    if (oldest != null) {
+                        deferIfLatest(oldest);
+                        removed = true;
+                    }
+                }
+                log.trace("Outbound queue overflow for websocket session {}, policy {}",
+                        webSocketSession.getId(), overflowPolicy);
+                droppedCount++;
+                if (!removed && message.isDroppable() && overflowPolicy != OverflowPolicy.DISCONNECT) {
+                    // В очереди только то, что нельзя терять: новое сообщение ждет, пока очередь не опустеет
+                    pendingStates.remove(message.getStateKey());
+                    pendingStates.put(message.getStateKey(), message);
+                    return;
+                }
+                disconnect = !removed;
+                if (disconnect) {
+                    messages.clear();
+                    pendingStates.clear();
+                }
+            }
+            if (!disconnect) {
+                if (!queued) {
+                    messages.addLast(message);
+                }
+                if (message.getStateKey() != null) {
+                    pendingStates.remove(message.getStateKey());
+                }
+            }
+            startDrain = !disconnect && !draining;
+            draining |= startDrain;
+        }
+        if (disconnect) {
+            log.warn("Outbound queue overflow for websocket session {}, disconnect", webSocketSession.getId());
+            close(CloseStatus.SESSION_NOT_RELIABLE);
+        } else if (startDrain) {
+            executor.execute(this);
+        }
+    }
+
+    /**
+     * Closes the session after all already queued messages are sent. Later messages are ignored.
+     */
+    void closeAfterDrain(CloseStatus status) {
+        boolean startDrain;
+        synchronized (messages) {
+            closeStatus = status;
+            startDrain = !draining;
+            draining = true;
+        }
+        if (startDrain) {
+            executor.execute(this);
+        }
+    }
+
+    /**
+     * Stops sending and keeps up to {@code replayCapacity} next messages
+     * for the session that will replace the disconnected one.
+     */
+    void suspend(int replayCapacity) {
+        synchronized (messages) {
+            this.replayCapacity = Math.max(replayCapacity, 1);
+            messages.addAll(pendingStates.values());
+            pendingStates.clear();
+            if (messages.size() > this.replayCapacity) {
+                replayOverflow = true;
+                messages.clear();
+            }
+        }
+    }
+
+    /**
+     * Moves buffered messages to the queue of the new session and forwards all later messages to it.
+     *
+     * @return false, if the replay buffer overflowed and some messages are lost
+     */
+    boolean resume(OutboundMessageQueue queue) {
+        synchronized (messages) {
+            if (!replayOverflow) {
+                for (OutgoingMessage message : messages) {
+                    queue.offer(message);
+                }
+            }
+            messages.clear();
+            resumedQueue = queue;
+            return !replayOverflow;
+        }
+    }
+
+    /**
+     * Number of messages that were dropped or replaced because of queue overflow.
+     */
+    long getDroppedCount() {
+        synchronized (messages) {
+            return droppedCount;
+        }
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            OutgoingMessage message;
+            CloseStatus status;
+            synchronized (messages) {
+                message = replayCapacity == 0 ? pollNext() : null;
+                status = closeStatus;
+                if (message == null) {
+                    draining = false;
+                }
+            }
+            if (message == null) {
+                if (status != null) {
+                    close(status);
+                }
+                return;
+            }
+            try {
+                if (webSocketSession.isOpen()) {
+                    WebSocketMessage<?> webSocketMessage = message.getMessage(format, compression);
+                    long start = System.nanoTime();
+                    webSocketSession.sendMessage(webSocketMessage);
+                    metrics.messageSent(webSocketMessage.getPayloadLength(), System.nanoTime() - start);
+                }
+            } catch (IOException | RuntimeException e) {
+                log.error("Websocket session {} send error: {}", webSocketSession.getId(), e.getLocalizedMessage());
+                log.debug(e);
+            }
+        }
+    }
+
+    private void bufferForReplay(OutgoingMessage message) {
+        if (replayOverflow) {
+            return;
+        }
+        if (messages.size() >= replayCapacity) {
+            // Пропущенные события заменит полное состояние
+            replayOverflow = true;
+            droppedCount++;
+            messages.clear();
+            return;
+        }
+        messages.addLast(message);
+    }
+
+    private OutgoingMessage pollNext() {
+        OutgoingMessage message = messages.pollFirst();
+        if (message == null && !pendingStates.isEmpty()) {
+            Iterator<OutgoingMessage> iterator = pendingStates.values().iterator();
+            message = iterator.next();
+            iterator.remove();
+        }
+        return message;
+    }
+
+    private OutgoingMessage removeOldestDroppable() {
+        Iterator<OutgoingMessage> iterator = messages.iterator();
+        while (iterator.hasNext()) {
+            OutgoingMessage message = iterator.next();
+            if (message.isDroppable()) {
+                iterator.remove();
+                return message;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Keeps removed message to send it after the queue drains, unless a newer message of the same state exists.
+     */
+    private void deferIfLatest(OutgoingMessage removed) {
+        String stateKey = removed.getStateKey();
+        // Ожидающее сообщение того же состояния всегда новее вытесненного из очереди
+        if (pendingStates.containsKey(stateKey)) {
+            return;
+        }
+        for (OutgoingMessage queued : messages) {
+            if (stateKey.equals(queued.getStateKey())) {
+                return;
+            }
+        }
+        pendingStates.put(stateKey, removed);
+    }
+
+    /**
+     * Replaces the latest queued message with the same event by the new one in its place,
+     * so the new message keeps the order relative to other messages. If a later queued message
+     * changes the same client state (e.g. game restart after the stale game state),
+     * the stale message is removed and the new one is queued at the end instead.
+     *
+     * @return false, if there is no queued message with the same event
+     */
+    private boolean replaceSameEvent(OutgoingMessage message) {
+        OutgoingMessage[] queued = messages.toArray(new OutgoingMessage[0]);
+        int index = queued.length - 1;
+        while (index >= 0 && !(queued[index].isCoalescible() && Objects.equals(queued[index].getEvent(), message.getEvent()))) {
+            index--;
+        }
+        if (index < 0) {
+            return false;
+        }
+        String stateKey = message.getStateKey();
+        boolean inPlace = true;
+        for (int i = index + 1; i < queued.length && inPlace; i++) {
+            inPlace = stateKey == null || !stateKey.equals(queued[i].getStateKey());
+        }
+        // Переполнение редкое, очередь проще пересобрать, чем хранить в списке с заменой по месту
+        messages.clear();
+        for (int i = 0; i < queued.length; i++) {
+            if (i != index) {
+                messages.addLast(queued[i]);
+            } else if (inPlace) {
+                messages.addLast(message);
+            }
+        }
+        if (!inPlace) {
+            messages.addLast(message);
+        }
+        return true;
+    }
+
+    private void close(CloseStatus status) {
+        try {
+            if (webSocketSession.isOpen()) {
+                webSocketSession.close(status);
+            }
+        } catch (IOException e) {
+            log.error("Websocket session close error: {}", e.getLocalizedMessage());
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.websocket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.Getter;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Outgoing websocket frame that is encoded at most once per {@link WireFormat},
+ * no matter how many sessions it is sent to.
+ */
+class OutgoingMessage {
+
+    // События, потерю которых клиент восстанавливает: по ревизии членов, полному состоянию игры или повтору PING
+    private static final Set<String> DROPPABLE_EVENTS = Set.of(
+            GameWebSocketHandler.UPDATE_MEMBERS,
+            GameWebSocketHandler.MEMBER_ADDED,
+            GameWebSocketHandler.MEMBER_CHANGED,
+            GameWebSocketHandler.MEMBER_REMOVED,
+            GameWebSocketHandler.SPECTATORS_COUNT_CHANGED,
+            GameWebSocketHandler.GAME_STATE,
+            GameWebSocketHandler.GAME_STATE_PATCH,
+            GameWebSocketHandler.PONG);
+
+    // Состояние клиента, которое меняет событие: более новое сообщение того же состояния заменяет потерянное
+    private static final Map<String, String> STATE_KEYS = Map.of(
+            GameWebSocketHandler.UPDATE_MEMBERS, "members",
+            GameWebSocketHandler.MEMBER_ADDED, "members",
+            GameWebSocketHandler.MEMBER_CHANGED, "members",
+            GameWebSocketHandler.MEMBER_REMOVED, "members",
+            GameWebSocketHandler.SPECTATORS_COUNT_CHANGED, "members",
+            GameWebSocketHandler.GAME_STATE, "game",
+            GameWebSocketHandler.GAME_STATE_PATCH, "game",
+            GameWebSocketHandler.START_GAME, "game",
+            GameWebSocketHandler.RESTART_GAME, "game",
+            GameWebSocketHandler.PONG, "pong");
+
+    @Getter
+    private final JsonNode payload;
+
+    @Getter
+    private final String event;
+
+    /**
+     * Whether the message can be replaced by a newer message with the same event.
+     */
+    @Getter
+    private final boolean coalescible;
+
+    /**
+     * Whether the message may give way to other messages on queue overflow. It is not lost:
+     * either a newer message of the same {@link #getStateKey() state} is sent instead,
+     * or the message itself is sent after the queue drains. Game lifecycle, custom
+     * and error events are never dropped, the client can't recover them.
+     */
+    @Getter
+    private final boolean droppable;
+
+    /**
+     * Client state changed by the message (members, game), a later message with the same key supersedes it.
+     */
+    @Getter
+    private final String stateKey;
+
+    private final MessageCodec codec;
+
+    // Для каждого формата: обычное и сжатое представление
+    private final WebSocketMessage<?>[] messages = new WebSocketMessage<?>[WireFormat.values().length * 2];
+
+    OutgoingMessage(MessageCodec codec, JsonNode payload) {
+        this(codec, payload, true);
+    }
+
+    OutgoingMessage(MessageCodec codec, JsonNode payload, boolean coalescible) {
+        this.codec = codec;
+        this.payload = payload;
+        this.coalescible = coalescible;
+        JsonNode eventNode = payload.get(WebSocketEventProcessor.EVENT_PROPERTY_NAME);
+        this.event = eventNode != null ? eventNode.asText() : null;
+        this.droppable = event != null && DROPPABLE_EVENTS.contains(event);
+        this.stateKey = event != null ? STATE_KEYS.get(event) : null;
+    }
+
+    OutgoingMessage(String event, WireFormat format, WebSocketMessage<?> message) {
+        this.codec = null;
+        this.payload = null;
+        this.event = event;
+        this.coalescible = true;
+        this.droppable = event != null && DROPPABLE_EVENTS.contains(event);
+        this.stateKey = event != null ? STATE_KEYS.get(event) : null;
+        this.messages[format.ordinal() * 2] = message;
+    }
+
+    WebSocketMessage<?> getMessage(WireFormat format, boolean compression) throws IOException {
+        int index = format.ordinal() * 2 + (compression ? 1 : 0);
+        synchronized (messages) {
+            WebSocketMessage<?> message = messages[index];
+            if (message == null) {
+                if (compression) {
+                    WebSocketMessage<?> plain = getMessage(format, false);
+                    // Заранее закодированные кадры (PONG) не сжимаются
+                    message = codec != null ? codec.compress(plain, event) : plain;
+                } else {
+                    message = codec.encode(payload, format);
+                }
+                messages[index] = message;
+            }
+            return message;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.websocket;
+
+/**
+ * What to do when outbound queue of the player session is full.
+ * <p>
+ * Only messages the client can recover from give way (member updates, game state, PONG).
+ * If there is no such message in the queue, a new recoverable message waits until the queue drains,
+ * and the session is closed if the new message can't wait either. A message that gave way is still sent
+ * after the queue drains, unless a newer message of the same client state was queued after it,
+ * so the client never keeps a stale members list or game state.
+ */
+public enum OverflowPolicy {
+    /**
+     * Drop the oldest recoverable message.
+     */
+    DROP_OLDEST,
+    /**
+     * Replace the queued message with the same event (it is stale anyway) in its place in the queue,
+     * or drop the oldest recoverable one if there is no such message.
+     */
+    COALESCE,
+    /**
+     * Close the session of the client that can't keep up.
+     */
+    DISCONNECT
+}
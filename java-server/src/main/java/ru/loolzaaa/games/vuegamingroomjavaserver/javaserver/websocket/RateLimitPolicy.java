@@ -0,0 +1,20 @@
+package ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.websocket;
+
+/**
+ * What to do with incoming message of the session or room that exceeded its rate limit.
+ */
+public enum RateLimitPolicy {
+    /**
+     * Ignore the message.
+     */
+    DROP,
+    /**
+     * Process the message later, when the limit allows it. Messages that would wait
+     * longer than the time to refill the whole burst are dropped.
+     */
+    DELAY,
+    /**
+     * Send {@code ERROR} event and close the session.
+     */
+    CLOSE
+}
@@ -0,0 +1,65 @@
+package ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.websocket;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket.
+ * <p>
+ * Instead of the tokens count, only the time when the bucket becomes full again is stored,
+ * so a token is taken with a single CAS and without a refill task.
+ */
+class TokenBucket {
+
+    // Время получения одного токена
+    private final long interval;
+
+    // Насколько время полного наполнения может опережать текущее, пока в корзине есть токены
+    private final long tolerance;
+
+    private final AtomicLong fullAt;
+
+    TokenBucket(double ratePerSecond, int burst) {
+        if (ratePerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Rate and burst must be positive");
+        }
+        this.interval = Math.max((long) (1_000_000_000L / ratePerSecond), 1);
+        this.tolerance = interval * (burst - 1);
+        this.fullAt = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Takes a token, reserving a future one if the bucket is empty.
+     *
+     * @param maxWaitNanos maximum time to wait for a token, zero for immediate tokens only
+     * @return zero if the token is available now, nanoseconds until the reserved token
+     * is available, or -1 if no token is available within {@code maxWaitNanos}
+     */
+    long acquire(long maxWaitNanos) {
+        while (true) {
+            long now = System.nanoTime();
+            long current = fullAt.get();
+            long start = current - now > 0 ? current : now;
+            long wait = start - now - tolerance;
+            if (wait > maxWaitNanos) {
+                return -1;
+            }
+            if (fullAt.compareAndSet(current, start + interval)) {
+                return Math.max(wait, 0);
+            }
+        }
+    }
+
+    /**
+     * Returns a token taken by {@link #acquire(long)}, when the action it was taken for didn't happen.
+     */
+    void release() {
+        fullAt.addAndGet(-interval);
+    }
+
+    /**
+     * Time to refill the empty bucket.
+     */
+    long getRefillNanos() {
+        return tolerance + interval;
+    }
+}
@@ -19,16 +19,33 @@ public class TokenHandshakeInterceptor implements HandshakeInterceptor {
                                    WebSocketHandler wsHandler,
                                    Map<String, Object> attributes) {
         String query = request.getURI().getQuery();
+        String token = null;
+        WireFormat format = WireFormat.JSON;
+        boolean compression = false;
         if (query != null) {
             for (String param : query.split("&")) {
                 if (param.startsWith("token")) {
-                    String token = param.split("=")[1];
-                    attributes.put("token", token);
-                    log.debug("Websocket handshake successful with token: {}", token);
-                    return true;
+                    token = param.split("=")[1];
+                } else if (param.startsWith(GameWebSocketHandler.FORMAT_ATTRIBUTE + "=")) {
+                    try {
+                        format = WireFormat.fromParameter(param.substring(param.indexOf('=') + 1));
+                    } catch (IllegalArgumentException e) {
+                        log.warn("Unknown websocket format requested: {}", param);
+                        return false;
+                    }
+                } else if (param.equals(GameWebSocketHandler.COMPRESSION_ATTRIBUTE + "=deflate")) {
+                    compression = true;
                 }
             }
         }
+        if (token != null) {
+            attributes.put("token", token);
+            attributes.put(GameWebSocketHandler.FORMAT_ATTRIBUTE, format);
+            attributes.put(GameWebSocketHandler.COMPRESSION_ATTRIBUTE, compression);
+            log.debug("Websocket handshake successful with token: {}, format: {}, compression: {}",
+                    token, format, compression);
+            return true;
+        }
         return false;
     }
 
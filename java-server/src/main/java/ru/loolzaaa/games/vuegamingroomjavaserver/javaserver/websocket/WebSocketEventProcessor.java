@@ -22,6 +22,15 @@ public interface WebSocketEventProcessor {
 
     JsonNode restartGame(Game g, String userId);
 
+    /**
+     * Registers incoming events with typed payloads. The {@code data} property of such events
+     * is bound directly to the registered class, without building {@link ObjectNode} of the whole message.
+     * Events that are not registered here are passed to
+     * {@link #incomingEvent(ObjectNode, Game, String, Consumer, Consumer)}.
+     */
+    default void registerIncomingEvents(IncomingEventRegistry registry) {
+    }
+
     void incomingEvent(
             ObjectNode eventNode,
             Game g,
@@ -31,5 +40,44 @@ public interface WebSocketEventProcessor {
 
     ObjectNode outgoingEvent(String event, Game g, String userId);
 
+    /**
+     * Returns {@code true} if {@link #createGameState(Game, String)} builds the same state for every user,
+     * so it can be created and serialized once per broadcast.
+     */
+    default boolean isGameStateShared(Game g) {
+        return false;
+    }
+
+    /**
+     * Returns key of the game view of the user. Users with the same key get the same result of
+     * {@link #createGameState(Game, String)}, {@link #startGame(Game, String)} and {@link #restartGame(Game, String)},
+     * so it is created and serialized once per broadcast. For example, {@code "spectator"}, {@code "team-red"}
+     * or user id itself for a view with hidden information. Ignored for game state if {@link #isGameStateShared(Game)}.
+     */
+    default String getViewKey(Game g, String userId) {
+        return userId;
+    }
+
+    /**
+     * Returns {@code true} if {@link #outgoingEvent(String, Game, String)} builds the same payload
+     * for every user, so it can be created and serialized once per broadcast.
+     */
+    default boolean isOutgoingEventShared(String event, Game g) {
+        return false;
+    }
+
     JsonNode processEventError(Exception e);
+
+    interface IncomingEventRegistry {
+        <T> void register(String event, Class<T> payloadType, IncomingEventHandler<T> handler);
+    }
+
+    @FunctionalInterface
+    interface IncomingEventHandler<T> {
+        void handle(T payload,
+                    Game g,
+                    String userId,
+                    Consumer<JsonNode> sendMessage,
+                    Consumer<String> callbackEvent) throws Exception;
+    }
 }
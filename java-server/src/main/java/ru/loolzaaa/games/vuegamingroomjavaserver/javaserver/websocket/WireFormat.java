@@ -0,0 +1,20 @@
+package ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.websocket;
+
+import java.util.Locale;
+
+/**
+ * Websocket message format, negotiated with {@code format} handshake parameter.
+ * JSON is sent as text frames, other formats as binary frames.
+ */
+public enum WireFormat {
+    JSON,
+    CBOR,
+    SMILE;
+
+    public static WireFormat fromParameter(String parameter) {
+        if (parameter == null || parameter.isEmpty()) {
+            return JSON;
+        }
+        return WireFormat.valueOf(parameter.toUpperCase(Locale.ROOT));
+    }
+}
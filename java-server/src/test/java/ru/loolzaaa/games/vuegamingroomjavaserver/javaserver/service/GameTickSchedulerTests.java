@@ -0,0 +1,106 @@
+package ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.metrics.GameServerMetrics;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameTickSchedulerTests {
+
+    static final Duration INTERVAL = Duration.ofMillis(20);
+
+    final GameTickScheduler tickScheduler = new GameTickScheduler(1);
+
+    @AfterEach
+    void tearDown() {
+        tickScheduler.shutdown();
+    }
+
+    @Test
+    void shouldTickWithInterval() throws Exception {
+        CountDownLatch ticks = new CountDownLatch(5);
+        long start = System.nanoTime();
+
+        GameTickScheduler.Ticker ticker = tickScheduler.start(INTERVAL, ticks::countDown);
+
+        assertTrue(ticks.await(5, TimeUnit.SECONDS));
+        ticker.stop();
+        // Первый тик через интервал после старта, следующие - с тем же шагом
+        assertTrue(System.nanoTime() - start >= INTERVAL.toNanos() * 5);
+    }
+
+    @Test
+    void shouldNotTickAfterStop() throws Exception {
+        AtomicInteger ticks = new AtomicInteger();
+        GameTickScheduler.Ticker ticker = tickScheduler.start(INTERVAL, ticks::incrementAndGet);
+        Thread.sleep(INTERVAL.toMillis() * 3);
+
+        ticker.stop();
+        // Тик, уже начатый к моменту остановки, может завершиться
+        Thread.sleep(INTERVAL.toMillis());
+        int stoppedAt = ticks.get();
+        Thread.sleep(INTERVAL.toMillis() * 5);
+
+        assertTrue(stoppedAt > 0);
+        assertEquals(stoppedAt, ticks.get());
+    }
+
+    @Test
+    void shouldSkipAndCountLateTicks() throws Exception {
+        AtomicInteger overrun = new AtomicInteger();
+        tickScheduler.setMetrics(new GameServerMetrics() {
+            @Override
+            public void ticksOverrun(int count) {
+                overrun.addAndGet(count);
+            }
+        });
+        AtomicInteger ticks = new AtomicInteger();
+        CountDownLatch afterSlowTick = new CountDownLatch(1);
+
+        GameTickScheduler.Ticker ticker = tickScheduler.start(INTERVAL, () -> {
+            int tick = ticks.incrementAndGet();
+            if (tick == 1) {
+                sleep(INTERVAL.toMillis() * 5);
+            } else if (tick == 2) {
+                afterSlowTick.countDown();
+            }
+        });
+
+        assertTrue(afterSlowTick.await(5, TimeUnit.SECONDS));
+        ticker.stop();
+        // Медленный тик занял пять интервалов: пропущенные тики не выполняются пачкой
+        assertTrue(overrun.get() >= 3, () -> "Overrun " + overrun.get());
+        assertEquals(2, ticks.get());
+    }
+
+    @Test
+    void shouldContinueTickingAfterTickError() throws Exception {
+        CountDownLatch ticks = new CountDownLatch(3);
+
+        tickScheduler.start(INTERVAL, () -> {
+            ticks.countDown();
+            throw new IllegalStateException("Tick error");
+        });
+
+        assertTrue(ticks.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void shouldRejectInvalidThreadsCount() {
+        assertThrows(IllegalArgumentException.class, () -> new GameTickScheduler(0));
+    }
+
+    static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
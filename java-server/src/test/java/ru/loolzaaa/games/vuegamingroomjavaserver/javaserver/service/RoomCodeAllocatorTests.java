@@ -0,0 +1,103 @@
+package ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoomCodeAllocatorTests {
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 3, 4})
+    void shouldAllocateEveryCodeOnceOverFullDomain(int codeLength) {
+        RoomCodeAllocator allocator = new RoomCodeAllocator(codeLength);
+        int size = (int) Math.pow(26, codeLength);
+        BitSet allocated = new BitSet(size);
+
+        for (int i = 0; i < size; i++) {
+            int code = allocator.allocate();
+            assertTrue(code >= 0 && code < size, "Code " + code);
+            assertFalse(allocated.get(code), "Duplicate code " + allocator.encode(code));
+            allocated.set(code);
+        }
+
+        assertEquals(size, allocated.cardinality());
+        assertEquals(-1, allocator.allocate());
+    }
+
+    @Test
+    void shouldReuseReleasedCodesInReleaseOrder() {
+        RoomCodeAllocator allocator = new RoomCodeAllocator(2);
+        List<Integer> codes = new ArrayList<>();
+        for (int i = 0; i < 26 * 26; i++) {
+            codes.add(allocator.allocate());
+        }
+
+        allocator.release(codes.get(10));
+        allocator.release(codes.get(3));
+
+        assertEquals(codes.get(10), allocator.allocate());
+        assertEquals(codes.get(3), allocator.allocate());
+        assertEquals(-1, allocator.allocate());
+    }
+
+    @Test
+    void shouldGrowReleasedCodesBuffer() {
+        RoomCodeAllocator allocator = new RoomCodeAllocator(2);
+        List<Integer> codes = new ArrayList<>();
+        for (int i = 0; i < 26 * 26; i++) {
+            codes.add(allocator.allocate());
+        }
+
+        for (int code : codes) {
+            allocator.release(code);
+        }
+
+        for (int code : codes) {
+            assertEquals(code, allocator.allocate());
+        }
+        assertEquals(-1, allocator.allocate());
+    }
+
+    @Test
+    void shouldIgnoreReleaseOfCodeNotAllocatedYet() {
+        RoomCodeAllocator allocator = new RoomCodeAllocator(2);
+        int first = allocator.allocate();
+        BitSet allocated = new BitSet();
+        allocated.set(first);
+        // Любой другой код еще не выдан из перестановки
+        allocator.release(first == 0 ? 1 : 0);
+        allocator.release(-1);
+        allocator.release(26 * 26);
+
+        int code;
+        while ((code = allocator.allocate()) >= 0) {
+            assertFalse(allocated.get(code), "Duplicate code " + allocator.encode(code));
+            allocated.set(code);
+        }
+        assertEquals(26 * 26, allocated.cardinality());
+    }
+
+    @Test
+    void shouldEncodeAndDecodeCodes() {
+        RoomCodeAllocator allocator = new RoomCodeAllocator(4);
+
+        assertEquals("AAAA", allocator.encode(0));
+        assertEquals("ZZZZ", allocator.encode(26 * 26 * 26 * 26 - 1));
+        assertEquals("ABCD", allocator.encode(allocator.decode("ABCD")));
+        assertEquals(-1, allocator.decode("ABC"));
+        assertEquals(-1, allocator.decode("abcd"));
+        assertEquals(-1, allocator.decode(null));
+    }
+
+    @Test
+    void shouldRejectInvalidCodeLength() {
+        assertThrows(IllegalArgumentException.class, () -> new RoomCodeAllocator(0));
+        assertThrows(IllegalArgumentException.class, () -> new RoomCodeAllocator(RoomCodeAllocator.MAX_CODE_LENGTH + 1));
+    }
+}
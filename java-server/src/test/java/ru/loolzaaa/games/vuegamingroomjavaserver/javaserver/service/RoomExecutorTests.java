@@ -0,0 +1,278 @@
+package ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.dto.MemberChangeDTO;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.dto.RoomDTO;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.pojo.Game;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.pojo.Member;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.pojo.Room;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoomExecutorTests {
+
+    static final int TASKS_PER_ROOM = 200;
+
+    RoomExecutor roomExecutor;
+
+    @AfterEach
+    void tearDown() {
+        roomExecutor.shutdown();
+    }
+
+    @Test
+    void shouldExecuteRoomTasksOnOneShardInSubmissionOrder() throws Exception {
+        roomExecutor = new RoomExecutor(RoomExecutionMode.SHARDED, 4);
+        List<Room<TestGame>> rooms = new ArrayList<>();
+        List<List<Integer>> sequences = new ArrayList<>();
+        List<Set<String>> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            rooms.add(createRoom("ROOM" + i));
+            sequences.add(new ArrayList<>());
+            threads.add(new HashSet<>());
+        }
+        CountDownLatch done = new CountDownLatch(rooms.size() * TASKS_PER_ROOM);
+
+        // Задачи разных комнат перемешаны, списки комнаты меняются только в ее задачах
+        for (int task = 0; task < TASKS_PER_ROOM; task++) {
+            for (int i = 0; i < rooms.size(); i++) {
+                int roomIndex = i;
+                int sequence = task;
+                roomExecutor.execute(rooms.get(i), () -> {
+                    sequences.get(roomIndex).add(sequence);
+                    threads.get(roomIndex).add(Thread.currentThread().getName());
+                    done.countDown();
+                });
+            }
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < rooms.size(); i++) {
+            assertEquals(1, threads.get(i).size(), "Threads of room " + i + ": " + threads.get(i));
+            assertTrue(threads.get(i).iterator().next().startsWith("room-shard-"));
+            List<Integer> sequence = sequences.get(i);
+            assertEquals(TASKS_PER_ROOM, sequence.size());
+            for (int task = 0; task < TASKS_PER_ROOM; task++) {
+                assertEquals(task, sequence.get(task));
+            }
+        }
+    }
+
+    @Test
+    void shouldCallInlineFromTaskOfSameShard() throws Exception {
+        // Один шард: обе комнаты выполняются в одном потоке, ожидание своей же очереди было бы взаимоблокировкой
+        roomExecutor = new RoomExecutor(RoomExecutionMode.SHARDED, 1);
+        Room<TestGame> room = createRoom("AAAA");
+        Room<TestGame> otherRoom = createRoom("BBBB");
+        CompletableFuture<List<String>> result = new CompletableFuture<>();
+
+        roomExecutor.execute(room, () -> {
+            String taskThread = Thread.currentThread().getName();
+            String sameRoomThread = roomExecutor.call(room, () -> Thread.currentThread().getName());
+            String otherRoomThread = roomExecutor.call(otherRoom, () -> Thread.currentThread().getName());
+            result.complete(List.of(taskThread, sameRoomThread, otherRoomThread));
+        });
+
+        List<String> threadNames = result.get(5, TimeUnit.SECONDS);
+        assertEquals("room-shard-0", threadNames.get(0));
+        assertEquals(threadNames.get(0), threadNames.get(1));
+        assertEquals(threadNames.get(0), threadNames.get(2));
+    }
+
+    @Test
+    void shouldCallRoomOfAnotherShardFromShardThread() throws Exception {
+        roomExecutor = new RoomExecutor(RoomExecutionMode.SHARDED, 2);
+        Room<TestGame> room = createRoom("AAAA");
+        Room<TestGame> otherRoom = createRoom("AAAB");
+        assertNotEquals(Math.floorMod(room.getCode().hashCode(), 2), Math.floorMod(otherRoom.getCode().hashCode(), 2));
+        CompletableFuture<String> result = new CompletableFuture<>();
+
+        roomExecutor.execute(room, () -> result.complete(roomExecutor.call(otherRoom, () -> Thread.currentThread().getName())));
+
+        String otherShardThread = result.get(5, TimeUnit.SECONDS);
+        assertEquals(roomExecutor.call(otherRoom, () -> Thread.currentThread().getName()), otherShardThread);
+        assertNotEquals(roomExecutor.call(room, () -> Thread.currentThread().getName()), otherShardThread);
+    }
+
+    @Test
+    void shouldRethrowCallExceptionAndContinueShard() {
+        roomExecutor = new RoomExecutor(RoomExecutionMode.SHARDED, 1);
+        Room<TestGame> room = createRoom("AAAA");
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> roomExecutor.call(room, () -> {
+            throw new IllegalStateException("Call error");
+        }));
+
+        assertEquals("Call error", e.getMessage());
+        assertEquals("done", roomExecutor.call(room, () -> "done"));
+    }
+
+    @Test
+    void shouldRunInlineTasksOfRoomOneAtATime() throws Exception {
+        roomExecutor = new RoomExecutor(RoomExecutionMode.INLINE);
+        Room<TestGame> room = createRoom("AAAA");
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        ExecutorService threads = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(threads.submit(() -> {
+                    for (int task = 0; task < TASKS_PER_ROOM; task++) {
+                        roomExecutor.execute(room, () -> {
+                            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                            Thread.yield();
+                            running.decrementAndGet();
+                        });
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+
+        assertEquals(1, maxRunning.get());
+    }
+
+    @Test
+    void shouldRunInlineTasksOfDifferentRoomsInParallel() throws Exception {
+        roomExecutor = new RoomExecutor(RoomExecutionMode.INLINE);
+        Room<TestGame> room = createRoom("AAAA");
+        Room<TestGame> otherRoom = createRoom("BBBB");
+        CountDownLatch otherRoomTaskStarted = new CountDownLatch(1);
+
+        // Задача первой комнаты ждет задачу второй: с общей блокировкой это был бы таймаут
+        CompletableFuture<Boolean> roomTask = CompletableFuture.supplyAsync(() -> roomExecutor.call(room, () -> {
+            CompletableFuture.runAsync(() -> roomExecutor.execute(otherRoom, otherRoomTaskStarted::countDown));
+            try {
+                return otherRoomTaskStarted.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }));
+
+        assertTrue(roomTask.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void shouldCallInlineFromInlineTaskOfSameRoom() {
+        roomExecutor = new RoomExecutor(RoomExecutionMode.INLINE);
+        Room<TestGame> room = createRoom("AAAA");
+
+        String taskThread = roomExecutor.call(room, () -> {
+            assertEquals(Thread.currentThread().getName(), roomExecutor.call(room, () -> Thread.currentThread().getName()));
+            return Thread.currentThread().getName();
+        });
+
+        assertEquals(Thread.currentThread().getName(), taskThread);
+    }
+
+    @Test
+    void shouldTakeMailboxMonitorBeforeRoomMonitor() throws Exception {
+        roomExecutor = new RoomExecutor(RoomExecutionMode.INLINE);
+        RoomService roomService = new RoomService(new TestGameService());
+        RoomDTO roomDTO = roomService.createRoom("test-id-1", "first");
+        roomService.joinToRoom(roomDTO.getCode(), "test-id-2", "second");
+        Room<? extends Game> room = roomService.getRooms().get(roomDTO.getCode());
+        ExecutorService threads = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            // Задачи комнаты берут монитор комнаты под монитором почтового ящика,
+            // REST-поток берет только монитор комнаты, поэтому порядок блокировок везде один
+            futures.add(threads.submit(() -> repeat(i -> roomExecutor.execute(room,
+                    () -> roomService.changeMembers(room.getCode(), List.of(colorChange("test-id-1", i)))))));
+            futures.add(threads.submit(() -> repeat(i -> roomService.changeMembers(room.getCode(),
+                    List.of(colorChange("test-id-1", i), colorChange("test-id-2", i))))));
+            futures.add(threads.submit(() -> repeat(i -> roomExecutor.run(room, () -> {
+                synchronized (room) {
+                    roomExecutor.run(room, () -> room.getMemberByUserId("test-id-2").setColor(color(i)));
+                }
+            }))));
+            futures.add(threads.submit(() -> repeat(i -> roomExecutor.execute(room,
+                    () -> roomService.changeMemberColor(room.getCode(), "test-id-2", color(i))))));
+            for (Future<?> future : futures) {
+                try {
+                    future.get(10, TimeUnit.SECONDS);
+                } catch (TimeoutException e) {
+                    long[] deadlocked = ManagementFactory.getThreadMXBean().findDeadlockedThreads();
+                    fail("Room tasks didn't finish, deadlocked threads: " + (deadlocked == null ? 0 : deadlocked.length));
+                }
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+
+        assertNull(ManagementFactory.getThreadMXBean().findDeadlockedThreads());
+    }
+
+    static void repeat(IntConsumer action) {
+        for (int i = 0; i < TASKS_PER_ROOM; i++) {
+            action.accept(i);
+        }
+    }
+
+    static MemberChangeDTO colorChange(String userId, int i) {
+        return new MemberChangeDTO(userId, null, color(i), null, null);
+    }
+
+    static String color(int i) {
+        return String.format("#%06x", i);
+    }
+
+    static Room<TestGame> createRoom(String code) {
+        return new Room<>(code, "token", new TestGame());
+    }
+
+    static class TestGame implements Game {
+        @Override
+        public String getName() {
+            return "test";
+        }
+
+        @Override
+        public int getMinPlayers() {
+            return 1;
+        }
+
+        @Override
+        public int getMaxPlayers() {
+            return 4;
+        }
+    }
+
+    static class TestGameService implements GameService<TestGame> {
+        @Override
+        public String getGameName() {
+            return "test";
+        }
+
+        @Override
+        public TestGame createGameInstance() {
+            return new TestGame();
+        }
+
+        @Override
+        public void startNewGame(Game g, List<Member> members) {
+        }
+    }
+}
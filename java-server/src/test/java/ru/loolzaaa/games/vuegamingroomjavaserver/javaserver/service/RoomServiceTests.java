@@ -0,0 +1,205 @@
+package ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.dto.MemberChangeDTO;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.dto.RoomDTO;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.exception.RoomException;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.pojo.Game;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.pojo.Member;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.pojo.Room;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoomServiceTests {
+
+    static final Duration LOBBY_TTL = Duration.ofMillis(50);
+
+    RoomService roomService;
+
+    @BeforeEach
+    void setUp() {
+        roomService = new RoomService(new TestGameService());
+        roomService.setLobbyTtl(LOBBY_TTL);
+        roomService.setGameTtl(Duration.ofHours(1));
+    }
+
+    @Test
+    void shouldRemoveRoomWithoutActivityAfterLobbyTtl() throws Exception {
+        Room<? extends Game> room = createRoom();
+
+        assertTrue(roomService.removeExpiredRooms().isEmpty());
+        Thread.sleep(LOBBY_TTL.toMillis() * 2);
+
+        assertEquals(List.of(room), roomService.removeExpiredRooms());
+        assertFalse(roomService.getRooms().containsKey(room.getCode()));
+    }
+
+    @Test
+    void shouldKeepRoomWithStartedGameUntilGameTtl() throws Exception {
+        Room<? extends Game> room = createRoom();
+        room.setGameStarted(true);
+
+        Thread.sleep(LOBBY_TTL.toMillis() * 2);
+
+        assertTrue(roomService.removeExpiredRooms().isEmpty());
+        assertSame(room, roomService.getRooms().get(room.getCode()));
+    }
+
+    @Test
+    void shouldApplyLobbyTtlAfterGameIsRestarted() throws Exception {
+        Room<? extends Game> room = createRoom();
+        room.setGameStarted(true);
+        Thread.sleep(LOBBY_TTL.toMillis() * 2);
+        assertTrue(roomService.removeExpiredRooms().isEmpty());
+
+        room.setGameStarted(false);
+        room.updateLastActivity();
+        Thread.sleep(LOBBY_TTL.toMillis() * 2);
+
+        assertEquals(List.of(room), roomService.removeExpiredRooms());
+    }
+
+    @Test
+    void shouldRescheduleActiveRoomWhenTtlIsZero() {
+        roomService.setLobbyTtl(Duration.ZERO);
+        Room<? extends Game> room = createRoom();
+        room.setGameStarted(true);
+
+        assertTrue(roomService.removeExpiredRooms().isEmpty());
+        assertTrue(roomService.removeExpiredRooms().isEmpty());
+        assertSame(room, roomService.getRooms().get(room.getCode()));
+    }
+
+    @Test
+    void shouldSkipRoomRemovedBeforeExpiration() throws Exception {
+        Room<? extends Game> room = createRoom();
+
+        assertTrue(roomService.removeRoom(room.getCode(), room));
+        Thread.sleep(LOBBY_TTL.toMillis() * 2);
+
+        assertTrue(roomService.removeExpiredRooms().isEmpty());
+    }
+
+    @Test
+    void shouldRollBackMemberChangesWhenLaterChangeFails() {
+        Room<? extends Game> room = createRoom();
+        roomService.joinToRoom(room.getCode(), "test-id-2", "second");
+        roomService.joinToRoom(room.getCode(), "test-id-3", "third");
+        Member first = room.getMemberByUserId("test-id-1");
+        String color = first.getColor();
+
+        // Третий игрок превышает лимит игроков
+        RoomException e = assertThrows(RoomException.class, () -> roomService.changeMembers(room.getCode(), List.of(
+                new MemberChangeDTO("test-id-1", "renamed", "#000000", true, true),
+                new MemberChangeDTO("test-id-2", null, null, true, null),
+                new MemberChangeDTO("test-id-3", null, null, true, null))));
+
+        assertTrue(e.getMessage().startsWith("Change 2 of user test-id-3"), e.getMessage());
+        assertEquals("first", first.getNickname());
+        assertEquals(color, first.getColor());
+        assertSame(first, room.getMemberByNickname("first"));
+        assertNull(room.getMemberByNickname("renamed"));
+        assertTrue(room.getMembers().stream().allMatch(m -> m.isSpectator() && !m.isReady()));
+        assertEquals(0, room.getPlayersCount());
+        assertEquals(3, room.getSpectatorsCount());
+        assertEquals(0, room.getReadyCount());
+    }
+
+    @Test
+    void shouldSwapNicknamesInBatch() {
+        Room<? extends Game> room = createRoom();
+        roomService.joinToRoom(room.getCode(), "test-id-2", "second");
+        Member first = room.getMemberByUserId("test-id-1");
+        Member second = room.getMemberByUserId("test-id-2");
+
+        RoomException e = assertThrows(RoomException.class, () -> roomService.changeMembers(room.getCode(), List.of(
+                new MemberChangeDTO("test-id-1", "second", null, null, null))));
+        assertTrue(e.getMessage().endsWith("User with same nickname already exists"), e.getMessage());
+
+        roomService.changeMembers(room.getCode(), List.of(
+                new MemberChangeDTO("test-id-1", "temp", null, null, null),
+                new MemberChangeDTO("test-id-2", "first", null, null, null),
+                new MemberChangeDTO("test-id-1", "second", null, null, null)));
+
+        assertEquals("second", first.getNickname());
+        assertEquals("first", second.getNickname());
+        assertSame(first, room.getMemberByNickname("second"));
+        assertSame(second, room.getMemberByNickname("first"));
+        assertNull(room.getMemberByNickname("temp"));
+    }
+
+    @Test
+    void shouldValidateMemberChangesBeforeApplying() {
+        Room<? extends Game> room = createRoom();
+        Member first = room.getMemberByUserId("test-id-1");
+        MemberChangeDTO rename = new MemberChangeDTO("test-id-1", "renamed", null, null, null);
+
+        assertThrows(RoomException.class, () -> roomService.changeMembers(room.getCode(), null));
+        RoomException nullChange = assertThrows(RoomException.class,
+                () -> roomService.changeMembers(room.getCode(), Arrays.asList(rename, null)));
+        RoomException nullUserId = assertThrows(RoomException.class,
+                () -> roomService.changeMembers(room.getCode(), List.of(rename, new MemberChangeDTO())));
+        RoomException unknownMember = assertThrows(RoomException.class, () -> roomService.changeMembers(room.getCode(),
+                List.of(rename, new MemberChangeDTO("unknown", null, null, null, null))));
+
+        assertTrue(nullChange.getMessage().startsWith("Change 1"), nullChange.getMessage());
+        assertTrue(nullUserId.getMessage().startsWith("Change 1"), nullUserId.getMessage());
+        assertTrue(unknownMember.getMessage().startsWith("Change 1 of user unknown"), unknownMember.getMessage());
+        assertEquals("first", first.getNickname());
+        assertNull(room.getMemberByNickname("renamed"));
+    }
+
+    @Test
+    void shouldRejectJoinWithNicknameOfAnotherMember() {
+        Room<? extends Game> room = createRoom();
+
+        RoomException e = assertThrows(RoomException.class,
+                () -> roomService.joinToRoom(room.getCode(), "test-id-2", "first"));
+
+        assertEquals("User with same nickname already exists", e.getMessage());
+        assertNull(room.getMemberByUserId("test-id-2"));
+    }
+
+    Room<? extends Game> createRoom() {
+        RoomDTO roomDTO = roomService.createRoom("test-id-1", "first");
+        return roomService.getRooms().get(roomDTO.getCode());
+    }
+
+    static class TestGame implements Game {
+        @Override
+        public String getName() {
+            return "test";
+        }
+
+        @Override
+        public int getMinPlayers() {
+            return 1;
+        }
+
+        @Override
+        public int getMaxPlayers() {
+            return 2;
+        }
+    }
+
+    static class TestGameService implements GameService<TestGame> {
+        @Override
+        public String getGameName() {
+            return "test";
+        }
+
+        @Override
+        public TestGame createGameInstance() {
+            return new TestGame();
+        }
+
+        @Override
+        public void startNewGame(Game g, List<Member> members) {
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.task;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.dto.RoomDTO;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.pojo.Game;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.pojo.Member;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.pojo.Room;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service.GameService;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service.RoomExecutionMode;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service.RoomExecutor;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service.RoomService;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.websocket.GameWebSocketHandler;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.websocket.WebSocketEventProcessor;
+
+import java.io.DataInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class RoomSnapshotTaskTests {
+
+    static final int SNAPSHOT_MAGIC = 0x52534E50;
+    static final int JOURNAL_MAGIC = 0x524A524E;
+
+    @TempDir
+    Path directory;
+
+    final TestGameService gameService = new TestGameService();
+
+    final RoomExecutor roomExecutor = new RoomExecutor(RoomExecutionMode.INLINE);
+
+    RoomService roomService;
+
+    RoomSnapshotTask snapshotTask;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        roomService = new RoomService(gameService);
+        snapshotTask = createTask(roomService);
+        snapshotTask.restore();
+    }
+
+    @Test
+    void shouldWriteSnapshotAndJournalHeaders() throws Exception {
+        createRoom("first");
+        snapshotTask.persist();
+
+        ByteBuffer snapshot = ByteBuffer.wrap(Files.readAllBytes(directory.resolve("rooms.snapshot")));
+        assertEquals(SNAPSHOT_MAGIC, snapshot.getInt());
+        assertEquals(1, snapshot.getInt());
+        assertEquals(1, snapshot.getLong());
+        assertFalse(snapshot.hasRemaining());
+
+        ByteBuffer journal = ByteBuffer.wrap(Files.readAllBytes(directory.resolve("rooms.journal")));
+        assertEquals(JOURNAL_MAGIC, journal.getInt());
+        assertEquals(1, journal.getInt());
+        assertEquals(1, journal.getLong());
+        assertEquals(1, journal.get());
+        int length = journal.getInt();
+        assertEquals(length, journal.remaining());
+    }
+
+    @Test
+    void shouldAppendOnlyChangedRooms() throws Exception {
+        createRoom("first");
+        snapshotTask.persist();
+        long journalSize = Files.size(directory.resolve("rooms.journal"));
+
+        snapshotTask.persist();
+
+        assertEquals(journalSize, Files.size(directory.resolve("rooms.journal")));
+    }
+
+    @Test
+    void shouldAppendGameChangedOnlyByTick() throws Exception {
+        RoomDTO roomDTO = createRoom("first");
+        startGame(roomDTO, 1);
+        snapshotTask.persist();
+        Room<? extends Game> room = roomService.getRooms().get(roomDTO.getCode());
+        long lastActivity = room.getLastActivity();
+        long journalSize = Files.size(directory.resolve("rooms.journal"));
+
+        assertTrue(roomService.tickGame(room, 1));
+        snapshotTask.persist();
+
+        assertEquals(lastActivity, room.getLastActivity());
+        assertTrue(Files.size(directory.resolve("rooms.journal")) > journalSize);
+        Room<? extends Game> restored = restore().getRooms().get(roomDTO.getCode());
+        assertEquals(2, ((TestGame) restored.getGame()).score);
+    }
+
+    @Test
+    void shouldNotAppendGameNotChangedByTick() throws Exception {
+        RoomDTO roomDTO = createRoom("first");
+        startGame(roomDTO, -1);
+        snapshotTask.persist();
+        long journalSize = Files.size(directory.resolve("rooms.journal"));
+
+        assertFalse(roomService.tickGame(roomService.getRooms().get(roomDTO.getCode()), 1));
+        snapshotTask.persist();
+
+        assertEquals(journalSize, Files.size(directory.resolve("rooms.journal")));
+    }
+
+    @Test
+    void shouldRestoreRoomsWithMembers() throws Exception {
+        RoomDTO first = createRoom("first");
+        RoomDTO second = createRoom("second");
+        roomService.joinToRoom(first.getCode(), "test-id-2", "guest");
+        roomService.changeMemberPlayerStatus(first.getCode(), "test-id-2", true);
+        roomService.changeMemberReadyStatus(first.getCode(), "test-id-2", true);
+        roomService.changeMemberColor(first.getCode(), "test-id-2", "#123456");
+        snapshotTask.persist();
+        roomService.removeRoom(second.getCode(), roomService.getRooms().get(second.getCode()));
+        snapshotTask.persist();
+
+        RoomService restoredService = restore();
+
+        assertEquals(1, restoredService.getRooms().size());
+        Room<? extends Game> room = restoredService.getRooms().get(first.getCode());
+        assertEquals(first.getWsToken(), room.getWebSocketToken());
+        assertFalse(room.isGameStarted());
+        Member owner = room.getMemberByUserId(first.getUserId());
+        assertEquals("first", owner.getNickname());
+        assertTrue(owner.isAdmin());
+        Member guest = room.getMemberByUserId("test-id-2");
+        assertEquals("guest", guest.getNickname());
+        assertEquals("#123456", guest.getColor());
+        assertFalse(guest.isAdmin());
+        assertTrue(guest.isPlayer());
+        assertTrue(guest.isReady());
+        assertEquals(1, room.getPlayersCount());
+        assertEquals(1, room.getReadyCount());
+    }
+
+    @Test
+    void shouldRestoreStartedGameOnlyIfItIsSerialized() throws Exception {
+        RoomDTO serialized = createRoom("first");
+        RoomDTO notSerialized = createRoom("second");
+        startGame(serialized, 42);
+        startGame(notSerialized, -1);
+        snapshotTask.close();
+
+        RoomService restoredService = restore();
+
+        Room<? extends Game> room = restoredService.getRooms().get(serialized.getCode());
+        assertTrue(room.isGameStarted());
+        assertEquals(42, ((TestGame) room.getGame()).score);
+        assertNull(restoredService.getRooms().get(notSerialized.getCode()));
+    }
+
+    @Test
+    void shouldSwitchGenerationWhenJournalIsFull() throws Exception {
+        snapshotTask.setMaxJournalSize(1);
+        RoomDTO room = createRoom("first");
+        snapshotTask.persist();
+
+        ByteBuffer snapshot = ByteBuffer.wrap(Files.readAllBytes(directory.resolve("rooms.snapshot")));
+        snapshot.position(8);
+        assertEquals(2, snapshot.getLong());
+        ByteBuffer journal = ByteBuffer.wrap(Files.readAllBytes(directory.resolve("rooms.journal")));
+        journal.position(8);
+        assertEquals(2, journal.getLong());
+        assertFalse(journal.hasRemaining());
+
+        assertNotNull(restore().getRooms().get(room.getCode()));
+    }
+
+    @Test
+    void shouldIgnoreJournalOfPreviousGeneration() throws Exception {
+        RoomDTO room = createRoom("first");
+        snapshotTask.persist();
+        byte[] staleJournal = Files.readAllBytes(directory.resolve("rooms.journal"));
+        roomService.removeRoom(room.getCode(), roomService.getRooms().get(room.getCode()));
+        snapshotTask.close();
+        // Журнал первого поколения с записью удаленной комнаты рядом со снимком второго
+        Files.write(directory.resolve("rooms.journal"), staleJournal);
+
+        assertTrue(restore().getRooms().isEmpty());
+    }
+
+    @Test
+    void shouldSkipTruncatedTrailingRecord() throws Exception {
+        RoomDTO first = createRoom("first");
+        snapshotTask.persist();
+        RoomDTO second = createRoom("second");
+        snapshotTask.persist();
+        Path journalFile = directory.resolve("rooms.journal");
+        try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        RoomService restoredService = restore();
+
+        assertNotNull(restoredService.getRooms().get(first.getCode()));
+        assertNull(restoredService.getRooms().get(second.getCode()));
+    }
+
+    @Test
+    void shouldSkipFileOfUnknownFormat() throws Exception {
+        createRoom("first");
+        snapshotTask.close();
+        Files.write(directory.resolve("rooms.snapshot"), new byte[] {1, 2, 3});
+        Files.delete(directory.resolve("rooms.journal"));
+
+        assertTrue(restore().getRooms().isEmpty());
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(directory.resolve("rooms.snapshot")))) {
+            assertEquals(SNAPSHOT_MAGIC, in.readInt());
+        }
+    }
+
+    @Test
+    void shouldSerializeGameInRoomExecutionContext() throws Exception {
+        RoomDTO roomDTO = createRoom("first");
+        startGame(roomDTO, 1);
+        Room<? extends Game> room = roomService.getRooms().get(roomDTO.getCode());
+        CountDownLatch taskStarted = new CountDownLatch(1);
+        CountDownLatch taskFinished = new CountDownLatch(1);
+        CompletableFuture<Void> roomTask = CompletableFuture.runAsync(() -> roomExecutor.execute(room, () -> {
+            taskStarted.countDown();
+            try {
+                taskFinished.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        assertTrue(taskStarted.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<Void> persist = CompletableFuture.runAsync(snapshotTask::persist);
+
+        Thread.sleep(100);
+        assertFalse(persist.isDone());
+        assertEquals(0, gameService.serializedCount);
+        taskFinished.countDown();
+        persist.get(5, TimeUnit.SECONDS);
+        roomTask.get(5, TimeUnit.SECONDS);
+        assertEquals(1, gameService.serializedCount);
+    }
+
+    RoomSnapshotTask createTask(RoomService roomService) {
+        GameWebSocketHandler gameWebSocketHandler =
+                new GameWebSocketHandler(new ObjectMapper(), roomService, mock(WebSocketEventProcessor.class));
+        return new RoomSnapshotTask(roomService, gameService, gameWebSocketHandler, roomExecutor, directory);
+    }
+
+    RoomService restore() throws Exception {
+        RoomService restoredService = new RoomService(gameService);
+        createTask(restoredService).restore();
+        return restoredService;
+    }
+
+    RoomDTO createRoom(String nickname) {
+        return roomService.createRoom(null, nickname);
+    }
+
+    void startGame(RoomDTO roomDTO, int score) {
+        Room<? extends Game> room = roomService.getRooms().get(roomDTO.getCode());
+        ((TestGame) room.getGame()).score = score;
+        room.setGameStarted(true);
+        room.updateLastActivity();
+    }
+
+    static class TestGame implements Game {
+
+        // Отрицательный счет - игра без сериализации
+        volatile int score;
+
+        @Override
+        public String getName() {
+            return "test";
+        }
+
+        @Override
+        public int getMinPlayers() {
+            return 1;
+        }
+
+        @Override
+        public int getMaxPlayers() {
+            return 2;
+        }
+    }
+
+    static class TestGameService implements GameService<TestGame> {
+
+        volatile int serializedCount;
+
+        @Override
+        public String getGameName() {
+            return "test";
+        }
+
+        @Override
+        public TestGame createGameInstance() {
+            return new TestGame();
+        }
+
+        @Override
+        public void startNewGame(Game g, List<Member> members) {
+        }
+
+        // Тик меняет только игру с сериализацией
+        @Override
+        public boolean onTick(Game g, long deltaNanos) {
+            TestGame game = (TestGame) g;
+            if (game.score < 0) {
+                return false;
+            }
+            game.score++;
+            return true;
+        }
+
+        @Override
+        public byte[] serializeGame(Game g) {
+            serializedCount++;
+            int score = ((TestGame) g).score;
+            return score >= 0 ? ByteBuffer.allocate(4).putInt(score).array() : null;
+        }
+
+        @Override
+        public TestGame deserializeGame(byte[] data) {
+            TestGame game = new TestGame();
+            game.score = ByteBuffer.wrap(data).getInt();
+            return game;
+        }
+    }
+}
@@ -0,0 +1,563 @@
+package ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.websocket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.dto.RoomDTO;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.pojo.Game;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.pojo.Member;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.pojo.Room;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service.GameService;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service.GameTickScheduler;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service.RoomExecutionMode;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service.RoomExecutor;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.service.RoomService;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class GameWebSocketHandlerTests {
+
+    // Закрытие соединения без close frame от клиента
+    static final CloseStatus ABNORMAL_CLOSE = new CloseStatus(1006);
+
+    final ObjectMapper mapper = new ObjectMapper();
+
+    final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    final GameTickScheduler tickScheduler = new GameTickScheduler(1);
+
+    final TestGameService gameService = new TestGameService();
+
+    RoomService roomService;
+
+    WebSocketEventProcessor webSocketEventProcessor;
+
+    GameWebSocketHandler gameWebSocketHandler;
+
+    RoomDTO room;
+
+    @BeforeEach
+    void setUp() {
+        roomService = new RoomService(gameService);
+        webSocketEventProcessor = mock(WebSocketEventProcessor.class);
+        when(webSocketEventProcessor.createGameState(any(), any())).thenReturn(mapper.getNodeFactory().textNode("state"));
+        gameWebSocketHandler = new GameWebSocketHandler(mapper, roomService, webSocketEventProcessor);
+        gameWebSocketHandler.setScheduler(scheduler);
+        gameWebSocketHandler.setResumeGracePeriod(Duration.ofSeconds(10));
+        room = roomService.createRoom("test-id-1", "first");
+        roomService.joinToRoom(room.getCode(), "test-id-2", "second");
+        gameWebSocketHandler.createNewSessionsListForRoom(room.getWsToken(), room.getCode());
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdownNow();
+        tickScheduler.shutdown();
+    }
+
+    @Test
+    void shouldResumeSessionAndReplayMissedEvents() throws Exception {
+        TestSession first = connect("test-id-1");
+        TestSession second = connect("test-id-2");
+        gameWebSocketHandler.afterConnectionClosed(second.session, ABNORMAL_CLOSE);
+
+        gameWebSocketHandler.sendEvent(room.getCode(), GameWebSocketHandler.UPDATE_MEMBERS);
+        gameWebSocketHandler.sendEvent(room.getCode(), GameWebSocketHandler.UPDATE_MEMBERS);
+        assertNotNull(getRoom().getMemberByUserId("test-id-2"));
+        first.events.clear();
+        TestSession resumed = connect("test-id-2");
+
+        assertEquals(List.of(GameWebSocketHandler.UPDATE_MEMBERS, GameWebSocketHandler.UPDATE_MEMBERS), resumed.events);
+        // Остальные не видят переподключения
+        assertTrue(first.events.isEmpty());
+        assertEquals(2, gameWebSocketHandler.getRoomSessionsCount(room.getCode()));
+    }
+
+    @Test
+    void shouldNotCountSuspendedSessionsAsOpen() throws Exception {
+        connect("test-id-1");
+        TestSession second = connect("test-id-2");
+        assertEquals(2, gameWebSocketHandler.getOpenSessionsCount());
+
+        gameWebSocketHandler.afterConnectionClosed(second.session, ABNORMAL_CLOSE);
+        assertEquals(1, gameWebSocketHandler.getOpenSessionsCount());
+        assertEquals(2, gameWebSocketHandler.getRoomSessionsCount(room.getCode()));
+
+        connect("test-id-2");
+        assertEquals(2, gameWebSocketHandler.getOpenSessionsCount());
+    }
+
+    @Test
+    void shouldSendFullStateWhenReplayBufferOverflows() throws Exception {
+        gameWebSocketHandler.setReplayBufferSize(1);
+        getRoom().setGameStarted(true);
+        connect("test-id-1");
+        TestSession second = connect("test-id-2");
+        gameWebSocketHandler.afterConnectionClosed(second.session, ABNORMAL_CLOSE);
+
+        gameWebSocketHandler.sendEvent(room.getCode(), GameWebSocketHandler.UPDATE_MEMBERS);
+        gameWebSocketHandler.sendEvent(room.getCode(), GameWebSocketHandler.UPDATE_MEMBERS);
+        TestSession resumed = connect("test-id-2");
+
+        assertEquals(List.of(GameWebSocketHandler.UPDATE_MEMBERS, GameWebSocketHandler.GAME_STATE), resumed.events);
+        assertEquals(2, gameWebSocketHandler.getRoomSessionsCount(room.getCode()));
+    }
+
+    @Test
+    void shouldRemoveMemberWhenSessionIsNotResumedInTime() throws Exception {
+        gameWebSocketHandler.setResumeGracePeriod(Duration.ofMillis(50));
+        TestSession first = connect("test-id-1");
+        TestSession second = connect("test-id-2");
+        gameWebSocketHandler.afterConnectionClosed(second.session, ABNORMAL_CLOSE);
+        first.events.clear();
+
+        Thread.sleep(300);
+
+        assertNull(getRoom().getMemberByUserId("test-id-2"));
+        assertEquals(1, gameWebSocketHandler.getRoomSessionsCount(room.getCode()));
+        assertEquals(List.of(GameWebSocketHandler.UPDATE_MEMBERS), first.events);
+    }
+
+    @Test
+    void shouldNotResumeSessionClosedByServer() throws Exception {
+        roomService.changeMemberPlayerStatus(room.getCode(), "test-id-1", true);
+        connect("test-id-1");
+        TestSession spectator = connect("test-id-2");
+        gameWebSocketHandler.afterConnectionClosed(spectator.session, ABNORMAL_CLOSE);
+        // Наблюдатель выгоняется при старте игры, пока его сессия ожидает переподключения
+        gameWebSocketHandler.sendEvent(room.getCode(), GameWebSocketHandler.START_GAME);
+        assertEquals(2, gameWebSocketHandler.getRoomSessionsCount(room.getCode()));
+
+        TestSession reconnected = connect("test-id-2");
+
+        assertEquals(2, gameWebSocketHandler.getRoomSessionsCount(room.getCode()));
+        assertTrue(reconnected.events.contains(GameWebSocketHandler.GAME_STATE));
+        assertNull(getRoom().getMemberByUserId("test-id-2"));
+    }
+
+    @Test
+    void shouldNotResumeSessionClosedByClient() throws Exception {
+        TestSession first = connect("test-id-1");
+        TestSession second = connect("test-id-2");
+        first.events.clear();
+
+        gameWebSocketHandler.afterConnectionClosed(second.session, CloseStatus.NORMAL);
+
+        assertNull(getRoom().getMemberByUserId("test-id-2"));
+        assertEquals(1, gameWebSocketHandler.getRoomSessionsCount(room.getCode()));
+        assertEquals(List.of(GameWebSocketHandler.UPDATE_MEMBERS), first.events);
+    }
+
+    @Test
+    void shouldReturnSessionTokenWhenRoomLimitIsExceeded() throws Exception {
+        // Сессии хватает двух токенов на весь тест, комната пополняется каждые 100 мс
+        gameWebSocketHandler.setSessionRateLimit(1.0 / 3600);
+        gameWebSocketHandler.setSessionRateLimitBurst(2);
+        gameWebSocketHandler.setRoomRateLimit(10);
+        gameWebSocketHandler.setRoomRateLimitBurst(1);
+        gameWebSocketHandler.createNewSessionsListForRoom(room.getWsToken(), room.getCode());
+        TestSession first = connect("test-id-1");
+        first.events.clear();
+
+        gameWebSocketHandler.handleTextMessage(first.session, new TextMessage("{\"event\":\"PING\"}"));
+        gameWebSocketHandler.handleTextMessage(first.session, new TextMessage("{\"event\":\"PING\"}"));
+        Thread.sleep(150);
+        gameWebSocketHandler.handleTextMessage(first.session, new TextMessage("{\"event\":\"PING\"}"));
+
+        assertEquals(List.of(GameWebSocketHandler.PONG, GameWebSocketHandler.PONG), first.events);
+    }
+
+    @Test
+    void shouldBroadcastGameStateOnTicksWithoutUpdatingActivity() throws Exception {
+        gameService.tickInterval = Duration.ofMillis(20);
+        gameService.tickChangesState = true;
+        TestSession first = startTickingGame();
+        long lastActivity = getRoom().getLastActivity();
+
+        assertTrue(gameService.awaitTicks(5));
+
+        assertTrue(first.events.stream().filter(GameWebSocketHandler.GAME_STATE::equals).count() >= 3, first.events::toString);
+        assertEquals(lastActivity, getRoom().getLastActivity());
+    }
+
+    @Test
+    void shouldFlushMembersUpdateOnTickWithoutUpdatingActivity() throws Exception {
+        // Отложенное обновление уходит только с тиком, а не по таймеру
+        gameWebSocketHandler.setMembersUpdateDelay(Duration.ofSeconds(10));
+        gameWebSocketHandler.setMembersUpdateMaxDelay(Duration.ofSeconds(10));
+        gameService.tickInterval = Duration.ofMillis(20);
+        gameService.tickChangesState = true;
+        TestSession first = startTickingGame();
+        assertTrue(gameService.awaitTicks(gameService.ticks.get() + 1));
+        gameWebSocketHandler.sendEvent(room.getCode(), GameWebSocketHandler.UPDATE_MEMBERS);
+        first.events.clear();
+        long lastActivity = getRoom().getLastActivity();
+        long stateRevision = getRoom().getStateRevision();
+
+        assertTrue(gameService.awaitTicks(gameService.ticks.get() + 3));
+
+        assertTrue(first.events.contains(GameWebSocketHandler.UPDATE_MEMBERS), first.events::toString);
+        assertEquals(lastActivity, getRoom().getLastActivity());
+        assertTrue(getRoom().getStateRevision() > stateRevision);
+    }
+
+    @Test
+    void shouldSendRequestedGameStateOnceOnNextTick() throws Exception {
+        gameService.tickInterval = Duration.ofMillis(100);
+        TestSession first = startTickingGame();
+        first.events.clear();
+
+        gameWebSocketHandler.sendEvent(room.getCode(), GameWebSocketHandler.GAME_STATE);
+        gameWebSocketHandler.sendEvent(room.getCode(), GameWebSocketHandler.GAME_STATE);
+        gameWebSocketHandler.sendEvent(room.getCode(), GameWebSocketHandler.GAME_STATE);
+        assertTrue(gameService.awaitTicks(gameService.ticks.get() + 3));
+
+        assertEquals(List.of(GameWebSocketHandler.GAME_STATE), first.events);
+    }
+
+    @Test
+    void shouldStopTicksOnRestart() throws Exception {
+        gameService.tickInterval = Duration.ofMillis(20);
+        startTickingGame();
+        assertTrue(gameService.awaitTicks(2));
+
+        gameWebSocketHandler.sendEvent(room.getCode(), GameWebSocketHandler.RESTART_GAME);
+        // Тик, уже запланированный к моменту остановки, может выполниться
+        Thread.sleep(40);
+        int ticks = gameService.ticks.get();
+        Thread.sleep(100);
+
+        assertEquals(ticks, gameService.ticks.get());
+    }
+
+    @ParameterizedTest
+    @EnumSource(RoomExecutionMode.class)
+    void shouldNotTickConcurrentlyWithRoomTask(RoomExecutionMode mode) throws Exception {
+        RoomExecutor roomExecutor = new RoomExecutor(mode, 1);
+        gameWebSocketHandler.setRoomExecutor(roomExecutor);
+        gameService.tickInterval = Duration.ofMillis(10);
+        startTickingGame();
+        assertTrue(gameService.awaitTicks(1));
+        CountDownLatch taskStarted = new CountDownLatch(1);
+        CompletableFuture<Void> roomTask = CompletableFuture.runAsync(() -> roomExecutor.execute(getRoom(), () -> {
+            gameService.roomTaskRunning = true;
+            taskStarted.countDown();
+            sleep(100);
+            gameService.roomTaskRunning = false;
+        }));
+        assertTrue(taskStarted.await(5, TimeUnit.SECONDS));
+        roomTask.get(5, TimeUnit.SECONDS);
+        int ticks = gameService.ticks.get();
+
+        assertTrue(gameService.awaitTicks(ticks + 2));
+        assertFalse(gameService.tickDuringRoomTask);
+    }
+
+    @Test
+    void shouldReconstructMembersFromDeltas() throws Exception {
+        gameWebSocketHandler.setMemberDeltas(true);
+        TestSession first = connect("test-id-1");
+        connect("test-id-2");
+        roomService.joinToRoom(room.getCode(), "test-id-3", "third");
+        TestSession third = connect("test-id-3");
+
+        roomService.changeMemberPlayerStatus(room.getCode(), "test-id-1", true);
+        gameWebSocketHandler.sendEvent(room.getCode(), GameWebSocketHandler.UPDATE_MEMBERS);
+        roomService.changeMemberPlayerStatus(room.getCode(), "test-id-2", true);
+        gameWebSocketHandler.sendEvent(room.getCode(), GameWebSocketHandler.UPDATE_MEMBERS);
+        roomService.changeMemberNickname(room.getCode(), "test-id-1", "renamed");
+        roomService.changeMemberColor(room.getCode(), "test-id-2", "#123456");
+        gameWebSocketHandler.sendEvent(room.getCode(), GameWebSocketHandler.UPDATE_MEMBERS);
+        gameWebSocketHandler.afterConnectionClosed(third.session, CloseStatus.NORMAL);
+        roomService.changeMemberPlayerStatus(room.getCode(), "test-id-2", false);
+        gameWebSocketHandler.sendEvent(room.getCode(), GameWebSocketHandler.UPDATE_MEMBERS);
+
+        MembersClient client = new MembersClient();
+        client.apply(first.messages);
+
+        assertFalse(client.gap);
+        assertTrue(first.events.contains(GameWebSocketHandler.MEMBER_ADDED));
+        assertTrue(first.events.contains(GameWebSocketHandler.MEMBER_CHANGED));
+        assertTrue(first.events.contains(GameWebSocketHandler.MEMBER_REMOVED));
+        assertTrue(first.events.contains(GameWebSocketHandler.SPECTATORS_COUNT_CHANGED));
+        assertEquals(List.of(mapper.valueToTree(getRoom().getMemberByUserId("test-id-1"))), new ArrayList<>(client.members.values()));
+        assertEquals(1, client.spectatorsCount);
+    }
+
+    @Test
+    void shouldResyncMembersAfterRevisionGap() throws Exception {
+        gameWebSocketHandler.setMemberDeltas(true);
+        TestSession first = connect("test-id-1");
+        connect("test-id-2");
+        roomService.changeMemberPlayerStatus(room.getCode(), "test-id-1", true);
+        gameWebSocketHandler.sendEvent(room.getCode(), GameWebSocketHandler.UPDATE_MEMBERS);
+        roomService.changeMemberPlayerStatus(room.getCode(), "test-id-2", true);
+        gameWebSocketHandler.sendEvent(room.getCode(), GameWebSocketHandler.UPDATE_MEMBERS);
+
+        // Клиент теряет первое изменение после снимка
+        List<JsonNode> received = new ArrayList<>(first.messages);
+        int lost = first.events.indexOf(GameWebSocketHandler.MEMBER_ADDED);
+        received.remove(lost);
+        MembersClient client = new MembersClient();
+        client.apply(received);
+        assertTrue(client.gap);
+
+        first.messages.clear();
+        gameWebSocketHandler.handleTextMessage(first.session, new TextMessage(
+                "{\"event\":\"SYNC_MEMBERS\",\"data\":{\"code\":\"" + room.getCode() + "\",\"revision\":" + client.revision + "}}"));
+        client.apply(first.messages);
+
+        assertFalse(client.gap);
+        assertEquals(2, client.members.size());
+        assertEquals(0, client.spectatorsCount);
+        // Следующие изменения применяются поверх нового снимка
+        roomService.changeMemberColor(room.getCode(), "test-id-2", "#654321");
+        first.messages.clear();
+        gameWebSocketHandler.sendEvent(room.getCode(), GameWebSocketHandler.UPDATE_MEMBERS);
+        client.apply(first.messages);
+        assertFalse(client.gap);
+        assertEquals("#654321", client.members.get(getRoom().getMemberByUserId("test-id-2").getId()).path("color").asText());
+    }
+
+    @Test
+    void shouldCreateGameStateOncePerViewKey() throws Exception {
+        roomService.joinToRoom(room.getCode(), "test-id-3", "third");
+        TestSession first = connect("test-id-1");
+        TestSession second = connect("test-id-2");
+        TestSession third = connect("test-id-3");
+        // Первые двое видят игру одинаково, третий - по-своему
+        when(webSocketEventProcessor.getViewKey(any(), any()))
+                .thenAnswer(invocation -> "test-id-3".equals(invocation.getArgument(1)) ? "other" : "team");
+        when(webSocketEventProcessor.createGameState(any(), any()))
+                .thenAnswer(invocation -> mapper.getNodeFactory().textNode("state of " + invocation.getArgument(1)));
+        clearInvocations(webSocketEventProcessor);
+
+        gameWebSocketHandler.sendEvent(room.getCode(), GameWebSocketHandler.GAME_STATE);
+
+        verify(webSocketEventProcessor, times(2)).createGameState(any(), any());
+        WebSocketMessage<?> firstState = last(first.frames);
+        assertSame(firstState, last(second.frames));
+        assertNotSame(firstState, last(third.frames));
+        assertEquals("state of test-id-1", last(first.messages).path("data").asText());
+        assertEquals("state of test-id-3", last(third.messages).path("data").asText());
+    }
+
+    @Test
+    void shouldCreateSharedGameStateOnce() throws Exception {
+        roomService.joinToRoom(room.getCode(), "test-id-3", "third");
+        TestSession first = connect("test-id-1");
+        TestSession second = connect("test-id-2");
+        TestSession third = connect("test-id-3");
+        when(webSocketEventProcessor.isGameStateShared(any())).thenReturn(true);
+        clearInvocations(webSocketEventProcessor);
+
+        gameWebSocketHandler.sendEvent(room.getCode(), GameWebSocketHandler.GAME_STATE);
+
+        verify(webSocketEventProcessor, times(1)).createGameState(any(), any());
+        verify(webSocketEventProcessor, never()).getViewKey(any(), any());
+        assertSame(last(first.frames), last(second.frames));
+        assertSame(last(first.frames), last(third.frames));
+    }
+
+    static <T> T last(List<T> list) {
+        return list.get(list.size() - 1);
+    }
+
+    TestSession startTickingGame() throws Exception {
+        gameWebSocketHandler.setTickScheduler(tickScheduler);
+        // Наблюдатели выгоняются при старте игры
+        roomService.changeMemberPlayerStatus(room.getCode(), "test-id-1", true);
+        roomService.changeMemberPlayerStatus(room.getCode(), "test-id-2", true);
+        TestSession first = connect("test-id-1");
+        gameWebSocketHandler.sendEvent(room.getCode(), GameWebSocketHandler.START_GAME);
+        return first;
+    }
+
+    static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    Room<? extends Game> getRoom() {
+        return roomService.getRooms().get(room.getCode());
+    }
+
+    TestSession connect(String userId) throws Exception {
+        TestSession testSession = new TestSession();
+        WebSocketSession session = mock(WebSocketSession.class);
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put("token", userId + ":" + room.getWsToken());
+        AtomicBoolean open = new AtomicBoolean(true);
+        when(session.getId()).thenReturn(userId + "-" + System.nanoTime());
+        when(session.getAttributes()).thenReturn(attributes);
+        when(session.isOpen()).thenAnswer(invocation -> open.get());
+        doAnswer(invocation -> {
+            open.set(false);
+            return null;
+        }).when(session).close(any());
+        doAnswer(invocation -> {
+            WebSocketMessage<?> message = invocation.getArgument(0);
+            JsonNode node = mapper.readTree((String) message.getPayload());
+            testSession.events.add(node.path("event").asText());
+            testSession.messages.add(node);
+            testSession.frames.add(message);
+            return null;
+        }).when(session).sendMessage(any());
+        testSession.session = session;
+        gameWebSocketHandler.afterConnectionEstablished(session);
+        return testSession;
+    }
+
+    static class TestSession {
+        WebSocketSession session;
+        final List<String> events = new CopyOnWriteArrayList<>();
+        final List<JsonNode> messages = new CopyOnWriteArrayList<>();
+        final List<WebSocketMessage<?>> frames = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * Members list of the client, built from snapshots and deltas the way the client does it.
+     */
+    static class MembersClient {
+        final Map<Integer, JsonNode> members = new LinkedHashMap<>();
+        long spectatorsCount;
+        long revision = -1;
+        boolean gap;
+
+        void apply(List<JsonNode> messages) {
+            for (JsonNode message : messages) {
+                apply(message);
+            }
+        }
+
+        void apply(JsonNode message) {
+            String event = message.path("event").asText();
+            JsonNode data = message.path("data");
+            if (event.equals(GameWebSocketHandler.UPDATE_MEMBERS)) {
+                members.clear();
+                data.path("members").forEach(m -> members.put(m.path("id").asInt(), m));
+                spectatorsCount = data.path("spectatorsCount").asLong();
+                revision = data.path("revision").asLong();
+                gap = false;
+                return;
+            }
+            if (!List.of(GameWebSocketHandler.MEMBER_ADDED, GameWebSocketHandler.MEMBER_CHANGED,
+                    GameWebSocketHandler.MEMBER_REMOVED, GameWebSocketHandler.SPECTATORS_COUNT_CHANGED).contains(event)) {
+                return;
+            }
+            long nextRevision = data.path("revision").asLong();
+            if (nextRevision != revision + 1) {
+                // Клиент не применяет изменения после пропуска, пока не получит снимок
+                gap = true;
+            }
+            if (gap) {
+                return;
+            }
+            revision = nextRevision;
+            switch (event) {
+                case GameWebSocketHandler.MEMBER_REMOVED -> members.remove(data.path("id").asInt());
+                case GameWebSocketHandler.SPECTATORS_COUNT_CHANGED -> spectatorsCount = data.path("spectatorsCount").asLong();
+                default -> members.put(data.path("member").path("id").asInt(), data.path("member"));
+            }
+        }
+    }
+
+    static class TestGame implements Game {
+        @Override
+        public String getName() {
+            return "test";
+        }
+
+        @Override
+        public int getMinPlayers() {
+            return 1;
+        }
+
+        @Override
+        public int getMaxPlayers() {
+            return 2;
+        }
+    }
+
+    static class TestGameService implements GameService<TestGame> {
+
+        volatile Duration tickInterval = Duration.ZERO;
+        volatile boolean tickChangesState;
+        volatile boolean roomTaskRunning;
+        volatile boolean tickDuringRoomTask;
+        final AtomicInteger ticks = new AtomicInteger();
+
+        @Override
+        public String getGameName() {
+            return "test";
+        }
+
+        @Override
+        public TestGame createGameInstance() {
+            return new TestGame();
+        }
+
+        @Override
+        public void startNewGame(Game g, List<Member> members) {
+        }
+
+        @Override
+        public Duration getTickInterval(Game g) {
+            return tickInterval;
+        }
+
+        @Override
+        public boolean onTick(Game g, long deltaNanos) {
+            if (roomTaskRunning) {
+                tickDuringRoomTask = true;
+            }
+            synchronized (ticks) {
+                ticks.incrementAndGet();
+                ticks.notifyAll();
+            }
+            return tickChangesState;
+        }
+
+        boolean awaitTicks(int count) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            synchronized (ticks) {
+                while (ticks.get() < count) {
+                    long left = deadline - System.nanoTime();
+                    if (left <= 0) {
+                        return false;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(ticks, left);
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.websocket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonPatchTests {
+
+    final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void shouldReturnEmptyPatchForEqualTrees() throws Exception {
+        JsonNode tree = json("{\"a\":{\"b\":[1,2,3]},\"c\":\"d\"}");
+
+        assertEquals(json("[]"), diff(tree, tree.deepCopy()));
+    }
+
+    @Test
+    void shouldDiffNestedObjects() throws Exception {
+        JsonNode source = json("{\"board\":{\"turn\":1,\"cell\":{\"x\":0,\"y\":0}},\"removed\":true}");
+        JsonNode target = json("{\"board\":{\"turn\":2,\"cell\":{\"x\":0,\"y\":1},\"winner\":null}}");
+
+        ArrayNode patch = diff(source, target);
+
+        assertEquals(json("""
+                [
+                  {"op":"replace","path":"/board/turn","value":2},
+                  {"op":"replace","path":"/board/cell/y","value":1},
+                  {"op":"add","path":"/board/winner","value":null},
+                  {"op":"remove","path":"/removed"}
+                ]"""), patch);
+        assertEquals(target, apply(source, patch));
+    }
+
+    @Test
+    void shouldAppendToGrowingArray() throws Exception {
+        JsonNode source = json("{\"moves\":[1,2]}");
+        JsonNode target = json("{\"moves\":[1,3,4,5]}");
+
+        ArrayNode patch = diff(source, target);
+
+        assertEquals(json("""
+                [
+                  {"op":"replace","path":"/moves/1","value":3},
+                  {"op":"add","path":"/moves/-","value":4},
+                  {"op":"add","path":"/moves/-","value":5}
+                ]"""), patch);
+        assertEquals(target, apply(source, patch));
+    }
+
+    @Test
+    void shouldRemoveFromEndOfShrinkingArray() throws Exception {
+        JsonNode source = json("{\"moves\":[1,2,3,4]}");
+        JsonNode target = json("{\"moves\":[0]}");
+
+        ArrayNode patch = diff(source, target);
+
+        assertEquals(json("""
+                [
+                  {"op":"replace","path":"/moves/0","value":0},
+                  {"op":"remove","path":"/moves/3"},
+                  {"op":"remove","path":"/moves/2"},
+                  {"op":"remove","path":"/moves/1"}
+                ]"""), patch);
+        assertEquals(target, apply(source, patch));
+    }
+
+    @Test
+    void shouldEscapeKeysInPath() throws Exception {
+        JsonNode source = json("{\"a/b\":1,\"c~d\":{\"~/\":1}}");
+        JsonNode target = json("{\"a/b\":2,\"c~d\":{\"~/\":2}}");
+
+        ArrayNode patch = diff(source, target);
+
+        assertEquals(json("""
+                [
+                  {"op":"replace","path":"/a~1b","value":2},
+                  {"op":"replace","path":"/c~0d/~0~1","value":2}
+                ]"""), patch);
+        assertEquals(target, apply(source, patch));
+    }
+
+    @Test
+    void shouldReplaceRootWhenTypesDiffer() throws Exception {
+        JsonNode source = json("{\"a\":1}");
+        JsonNode target = json("[1,2]");
+
+        ArrayNode patch = diff(source, target);
+
+        assertEquals(json("[{\"op\":\"replace\",\"path\":\"\",\"value\":[1,2]}]"), patch);
+        assertEquals(target, apply(source, patch));
+    }
+
+    @Test
+    void shouldReplaceNestedValueOfAnotherType() throws Exception {
+        JsonNode source = json("{\"state\":[1,2]}");
+        JsonNode target = json("{\"state\":{\"0\":1}}");
+
+        ArrayNode patch = diff(source, target);
+
+        assertEquals(json("[{\"op\":\"replace\",\"path\":\"/state\",\"value\":{\"0\":1}}]"), patch);
+        assertEquals(target, apply(source, patch));
+    }
+
+    ArrayNode diff(JsonNode source, JsonNode target) {
+        return JsonPatch.diff(source, target, mapper.getNodeFactory());
+    }
+
+    JsonNode json(String content) throws Exception {
+        return mapper.readTree(content);
+    }
+
+    // Минимальное применение патча по RFC 6902: только операции, которые строит JsonPatch
+    static JsonNode apply(JsonNode source, ArrayNode patch) {
+        JsonNode result = source.deepCopy();
+        for (JsonNode operation : patch) {
+            String op = operation.get("op").asText();
+            String path = operation.get("path").asText();
+            JsonNode value = operation.get("value");
+            if (path.isEmpty()) {
+                result = value.deepCopy();
+                continue;
+            }
+            int separator = path.lastIndexOf('/');
+            JsonNode parent = result.at(path.substring(0, separator));
+            String key = path.substring(separator + 1).replace("~1", "/").replace("~0", "~");
+            if (parent.isArray()) {
+                ArrayNode array = (ArrayNode) parent;
+                switch (op) {
+                    case "add" -> array.add(value);
+                    case "remove" -> array.remove(Integer.parseInt(key));
+                    case "replace" -> array.set(Integer.parseInt(key), value);
+                    default -> fail("Unexpected operation " + op);
+                }
+            } else {
+                ObjectNode object = (ObjectNode) parent;
+                switch (op) {
+                    case "add", "replace" -> object.set(key, value);
+                    case "remove" -> object.remove(key);
+                    default -> fail("Unexpected operation " + op);
+                }
+            }
+        }
+        return result;
+    }
+}
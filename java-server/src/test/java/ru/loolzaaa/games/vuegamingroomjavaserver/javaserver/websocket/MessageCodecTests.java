@@ -0,0 +1,146 @@
+package ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.websocket;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Inflater;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageCodecTests {
+
+    final ObjectMapper mapper = new ObjectMapper();
+
+    final MessageCodec codec = new MessageCodec(mapper);
+
+    @ParameterizedTest
+    @EnumSource(WireFormat.class)
+    void shouldDecodeEncodedMessage(WireFormat format) throws Exception {
+        ObjectNode payload = createPayload(10);
+
+        WebSocketMessage<?> message = codec.encode(payload, format);
+
+        assertEquals(format == WireFormat.JSON, message instanceof TextMessage);
+        try (JsonParser parser = codec.createParser(message, format)) {
+            JsonNode decoded = codec.getMapper(format).readTree(parser);
+            assertEquals(payload, decoded);
+        }
+    }
+
+    @Test
+    void shouldDecodeBinaryMessageFromBufferSlice() throws Exception {
+        ObjectNode payload = createPayload(1);
+        byte[] bytes = codec.getMapper(WireFormat.CBOR).writeValueAsBytes(payload);
+        byte[] framed = new byte[bytes.length + 4];
+        System.arraycopy(bytes, 0, framed, 2, bytes.length);
+        ByteBuffer slice = ByteBuffer.wrap(framed, 2, bytes.length).slice();
+
+        try (JsonParser parser = codec.createParser(new BinaryMessage(slice), WireFormat.CBOR)) {
+            assertEquals(payload, codec.getMapper(WireFormat.CBOR).readTree(parser));
+        }
+    }
+
+    @Test
+    void shouldNotStartBinaryFormatsWithZlibHeader() throws Exception {
+        for (WireFormat format : new WireFormat[] {WireFormat.CBOR, WireFormat.SMILE}) {
+            ByteBuffer bytes = ((BinaryMessage) codec.encode(createPayload(1), format)).getPayload();
+            assertNotEquals(0x78, bytes.get(0) & 0xFF, format::name);
+        }
+    }
+
+    @Test
+    void shouldParseFormatParameter() {
+        assertEquals(WireFormat.JSON, WireFormat.fromParameter(null));
+        assertEquals(WireFormat.JSON, WireFormat.fromParameter(""));
+        assertEquals(WireFormat.CBOR, WireFormat.fromParameter("cbor"));
+        assertEquals(WireFormat.SMILE, WireFormat.fromParameter("Smile"));
+        assertThrows(IllegalArgumentException.class, () -> WireFormat.fromParameter("xml"));
+    }
+
+    @Test
+    void shouldCompressOnlyMessagesAboveThreshold() throws Exception {
+        codec.setCompressionThreshold(256);
+        WebSocketMessage<?> small = codec.encode(createPayload(1), WireFormat.JSON);
+        WebSocketMessage<?> large = codec.encode(createPayload(100), WireFormat.JSON);
+
+        assertSame(small, codec.compress(small, "SMALL"));
+        WebSocketMessage<?> compressed = codec.compress(large, "LARGE");
+
+        assertInstanceOf(BinaryMessage.class, compressed);
+        byte[] bytes = toBytes(((BinaryMessage) compressed).getPayload());
+        assertEquals(0x78, bytes[0] & 0xFF);
+        assertArrayEquals(((TextMessage) large).asBytes(), inflate(bytes));
+    }
+
+    @Test
+    void shouldReuseBoundedPoolOfDeflaters() throws Exception {
+        codec.setCompressionThreshold(0);
+        WebSocketMessage<?> message = codec.encode(createPayload(100), WireFormat.JSON);
+        byte[] expected = ((TextMessage) message).asBytes();
+        int threads = MessageCodec.DEFLATER_POOL_SIZE * 4;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<byte[]>> results = new ArrayList<>();
+            for (int i = 0; i < threads * 10; i++) {
+                results.add(executor.submit(() -> toBytes(((BinaryMessage) codec.compress(message, "TEST")).getPayload())));
+            }
+            for (Future<byte[]> result : results) {
+                assertArrayEquals(expected, inflate(result.get(10, TimeUnit.SECONDS)));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Сколько бы потоков ни сжимало, в пуле остается не больше его размера
+        assertTrue(codec.getPooledDeflatersCount() > 0);
+        assertTrue(codec.getPooledDeflatersCount() <= MessageCodec.DEFLATER_POOL_SIZE);
+    }
+
+    ObjectNode createPayload(int items) {
+        ObjectNode payload = mapper.createObjectNode();
+        payload.put(WebSocketEventProcessor.EVENT_PROPERTY_NAME, "TEST");
+        ObjectNode data = payload.putObject(WebSocketEventProcessor.DATA_PROPERTY_NAME);
+        data.put("number", 42);
+        data.put("flag", true);
+        data.putNull("empty");
+        for (int i = 0; i < items; i++) {
+            data.putArray("items" + i).add(i).add("item " + i).add(i / 2.0);
+        }
+        return payload;
+    }
+
+    static byte[] toBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    static byte[] inflate(byte[] bytes) throws Exception {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bytes);
+            byte[] buffer = new byte[bytes.length * 20];
+            int length = inflater.inflate(buffer);
+            assertTrue(inflater.finished());
+            return Arrays.copyOf(buffer, length);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.metrics.GameServerMetrics;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class OutboundMessageQueueTests {
+
+    static final int CAPACITY = 3;
+
+    static final ObjectMapper MAPPER = new ObjectMapper();
+
+    static final MessageCodec CODEC = new MessageCodec(MAPPER);
+
+    final Queue<Runnable> tasks = new ArrayDeque<>();
+
+    final List<String> sent = new ArrayList<>();
+
+    WebSocketSession session;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn("test-session");
+        when(session.isOpen()).thenReturn(true);
+        doAnswer(invocation -> {
+            WebSocketMessage<?> message = invocation.getArgument(0);
+            String payload = (String) message.getPayload();
+            // Сообщения, построенные из дерева, отмечаются своим полем payload
+            sent.add(payload.startsWith("{") ? MAPPER.readTree(payload).path("payload").asText() : payload);
+            return null;
+        }).when(session).sendMessage(any());
+    }
+
+    @Test
+    void shouldSendMessagesInOfferOrder() {
+        OutboundMessageQueue queue = createQueue(OverflowPolicy.DROP_OLDEST);
+
+        queue.offer(message(GameWebSocketHandler.START_GAME, "1"));
+        queue.offer(message(GameWebSocketHandler.GAME_STATE, "2"));
+        queue.offer(message("CUSTOM", "3"));
+        runTasks();
+        queue.offer(message(GameWebSocketHandler.UPDATE_MEMBERS, "4"));
+        runTasks();
+
+        assertEquals(List.of("1", "2", "3", "4"), sent);
+        assertEquals(0, queue.getDroppedCount());
+    }
+
+    @Test
+    void shouldDropOldestDroppableMessageOnOverflow() throws Exception {
+        OutboundMessageQueue queue = createQueue(OverflowPolicy.DROP_OLDEST);
+
+        queue.offer(message(GameWebSocketHandler.START_GAME, "1"));
+        queue.offer(message(GameWebSocketHandler.GAME_STATE, "2"));
+        queue.offer(message("CUSTOM", "3"));
+        queue.offer(message(GameWebSocketHandler.RESTART_GAME, "4"));
+        runTasks();
+
+        assertEquals(List.of("1", "3", "4"), sent);
+        assertEquals(1, queue.getDroppedCount());
+        verify(session, never()).close(any());
+    }
+
+    @Test
+    void shouldSendNewDroppableMessageAfterDrainWhenQueueHasOnlyNotDroppableMessages() throws Exception {
+        OutboundMessageQueue queue = createQueue(OverflowPolicy.DROP_OLDEST);
+
+        queue.offer(message(GameWebSocketHandler.START_GAME, "1"));
+        queue.offer(message("CUSTOM", "2"));
+        queue.offer(message(GameWebSocketHandler.RESTART_GAME, "3"));
+        queue.offer(message(GameWebSocketHandler.UPDATE_MEMBERS, "4"));
+        queue.offer(message(GameWebSocketHandler.UPDATE_MEMBERS, "5"));
+        runTasks();
+
+        // Клиент получает последнее состояние членов комнаты, а не остается с устаревшим
+        assertEquals(List.of("1", "2", "3", "5"), sent);
+        assertEquals(2, queue.getDroppedCount());
+        verify(session, never()).close(any());
+    }
+
+    @Test
+    void shouldSendRemovedStateAfterDrainWhenNothingNewerIsQueued() {
+        OutboundMessageQueue queue = createQueue(OverflowPolicy.DROP_OLDEST);
+
+        queue.offer(message(GameWebSocketHandler.UPDATE_MEMBERS, "1"));
+        queue.offer(message("CUSTOM", "2"));
+        queue.offer(message("CUSTOM", "3"));
+        queue.offer(message("CUSTOM", "4"));
+        runTasks();
+
+        assertEquals(List.of("2", "3", "4", "1"), sent);
+    }
+
+    @Test
+    void shouldReplaceRemovedStateWithNewerStateOfSameKey() {
+        OutboundMessageQueue queue = createQueue(OverflowPolicy.DROP_OLDEST);
+
+        queue.offer(message(GameWebSocketHandler.GAME_STATE, "1"));
+        queue.offer(message("CUSTOM", "2"));
+        queue.offer(message("CUSTOM", "3"));
+        queue.offer(message("CUSTOM", "4"));
+        // Очередь занята только недропаемыми: новый патч ждет вместо вытесненного состояния
+        queue.offer(message(GameWebSocketHandler.GAME_STATE_PATCH, "5"));
+        runTasks();
+
+        assertEquals(List.of("2", "3", "4", "5"), sent);
+    }
+
+    @Test
+    void shouldKeepPendingStateOverSuspend() {
+        OutboundMessageQueue queue = createQueue(OverflowPolicy.DROP_OLDEST);
+        OutboundMessageQueue resumed = createQueue(OverflowPolicy.DROP_OLDEST);
+
+        queue.offer(message(GameWebSocketHandler.START_GAME, "1"));
+        queue.offer(message("CUSTOM", "2"));
+        queue.offer(message("CUSTOM", "3"));
+        queue.offer(message(GameWebSocketHandler.UPDATE_MEMBERS, "4"));
+        queue.suspend(10);
+        tasks.clear();
+
+        assertTrue(queue.resume(resumed));
+        runTasks();
+
+        assertEquals(List.of("1", "2", "3", "4"), sent);
+    }
+
+    @Test
+    void shouldCloseSessionWhenNotDroppableMessageDoesNotFit() throws Exception {
+        OutboundMessageQueue queue = createQueue(OverflowPolicy.DROP_OLDEST);
+
+        queue.offer(message(GameWebSocketHandler.START_GAME, "1"));
+        queue.offer(message("CUSTOM", "2"));
+        queue.offer(message("CUSTOM", "3"));
+        queue.offer(message(GameWebSocketHandler.RESTART_GAME, "4"));
+        runTasks();
+
+        assertTrue(sent.isEmpty());
+        verify(session).close(CloseStatus.SESSION_NOT_RELIABLE);
+    }
+
+    @Test
+    void shouldReplaceStaleMessageOfSameEventWhenCoalesce() {
+        OutboundMessageQueue queue = createQueue(OverflowPolicy.COALESCE);
+
+        queue.offer(message(GameWebSocketHandler.UPDATE_MEMBERS, "1"));
+        queue.offer(message(GameWebSocketHandler.GAME_STATE, "2"));
+        queue.offer(message(GameWebSocketHandler.START_GAME, "3"));
+        queue.offer(message(GameWebSocketHandler.GAME_STATE, "4"));
+        runTasks();
+
+        // Новое состояние игры не может уйти раньше старта игры, поэтому встает в конец
+        assertEquals(List.of("1", "3", "4"), sent);
+        assertEquals(1, queue.getDroppedCount());
+    }
+
+    @Test
+    void shouldReplaceStaleMessageInPlaceWhenCoalesce() {
+        OutboundMessageQueue queue = createQueue(OverflowPolicy.COALESCE);
+
+        queue.offer(message(GameWebSocketHandler.GAME_STATE, "1"));
+        queue.offer(message("CUSTOM", "2"));
+        queue.offer(message(GameWebSocketHandler.UPDATE_MEMBERS, "3"));
+        queue.offer(message(GameWebSocketHandler.GAME_STATE, "4"));
+        queue.offer(message(GameWebSocketHandler.UPDATE_MEMBERS, "5"));
+        runTasks();
+
+        assertEquals(List.of("4", "2", "5"), sent);
+        assertEquals(2, queue.getDroppedCount());
+    }
+
+    @Test
+    void shouldReplaceLatestMessageOfSameEventWhenCoalesce() {
+        OutboundMessageQueue queue = createQueue(OverflowPolicy.COALESCE);
+
+        queue.offer(message("CUSTOM", "1"));
+        queue.offer(message(GameWebSocketHandler.UPDATE_MEMBERS, "2"));
+        queue.offer(message("CUSTOM", "3"));
+        queue.offer(message(GameWebSocketHandler.UPDATE_MEMBERS, "4"));
+        queue.offer(message(GameWebSocketHandler.UPDATE_MEMBERS, "5"));
+        queue.offer(message(GameWebSocketHandler.UPDATE_MEMBERS, "6"));
+        runTasks();
+
+        assertEquals(List.of("1", "6", "3"), sent);
+        assertEquals(3, queue.getDroppedCount());
+    }
+
+    @Test
+    void shouldNotCoalesceNotCoalescibleMessages() {
+        OutboundMessageQueue queue = createQueue(OverflowPolicy.COALESCE);
+
+        queue.offer(message("CUSTOM", "1"));
+        queue.offer(message(GameWebSocketHandler.MEMBER_CHANGED, "2", false));
+        queue.offer(message("CUSTOM", "3"));
+        queue.offer(message(GameWebSocketHandler.MEMBER_CHANGED, "4", false));
+        runTasks();
+
+        // Изменения членов комнаты не схлопываются: вытесняется старейшее, а клиент увидит пропуск ревизии
+        assertEquals(List.of("1", "3", "4"), sent);
+    }
+
+    @Test
+    void shouldDropOldestDroppableMessageWhenCoalesceHasNoSameEvent() {
+        OutboundMessageQueue queue = createQueue(OverflowPolicy.COALESCE);
+
+        queue.offer(message(GameWebSocketHandler.START_GAME, "1"));
+        queue.offer(message(GameWebSocketHandler.UPDATE_MEMBERS, "2"));
+        queue.offer(message(GameWebSocketHandler.GAME_STATE, "3"));
+        queue.offer(message("CUSTOM", "4"));
+        runTasks();
+
+        // Вытесненное состояние членов комнаты отправляется последним: более нового нет
+        assertEquals(List.of("1", "3", "4", "2"), sent);
+    }
+
+    @Test
+    void shouldCloseSessionOnOverflowWhenDisconnect() throws Exception {
+        OutboundMessageQueue queue = createQueue(OverflowPolicy.DISCONNECT);
+
+        for (int i = 0; i < CAPACITY + 1; i++) {
+            queue.offer(message(GameWebSocketHandler.GAME_STATE, String.valueOf(i)));
+        }
+        runTasks();
+
+        assertTrue(sent.isEmpty());
+        verify(session).close(CloseStatus.SESSION_NOT_RELIABLE);
+    }
+
+    @Test
+    void shouldCloseSessionAfterQueuedMessagesAreSent() throws Exception {
+        OutboundMessageQueue queue = createQueue(OverflowPolicy.DROP_OLDEST);
+
+        queue.offer(message(GameWebSocketHandler.GAME_STATE, "1"));
+        queue.closeAfterDrain(CloseStatus.POLICY_VIOLATION);
+        queue.offer(message(GameWebSocketHandler.GAME_STATE, "2"));
+        runTasks();
+
+        assertEquals(List.of("1"), sent);
+        verify(session).close(CloseStatus.POLICY_VIOLATION);
+    }
+
+    OutboundMessageQueue createQueue(OverflowPolicy overflowPolicy) {
+        return new OutboundMessageQueue(session, WireFormat.JSON, false, tasks::add,
+                CAPACITY, overflowPolicy, GameServerMetrics.NOOP);
+    }
+
+    void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    static OutgoingMessage message(String event, String payload) {
+        return new OutgoingMessage(event, WireFormat.JSON, new TextMessage(payload));
+    }
+
+    static OutgoingMessage message(String event, String payload, boolean coalescible) {
+        ObjectNode node = MAPPER.createObjectNode();
+        node.put(WebSocketEventProcessor.EVENT_PROPERTY_NAME, event);
+        node.put("payload", payload);
+        return new OutgoingMessage(CODEC, node, coalescible);
+    }
+}
@@ -0,0 +1,106 @@
+package ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.websocket;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketTests {
+
+    // Токен в час: за время теста корзина не пополняется
+    static final double SLOW_RATE = 1.0 / 3600;
+
+    @Test
+    void shouldGiveBurstOfTokensAtOnce() {
+        TokenBucket bucket = new TokenBucket(SLOW_RATE, 3);
+
+        assertEquals(0, bucket.acquire(0));
+        assertEquals(0, bucket.acquire(0));
+        assertEquals(0, bucket.acquire(0));
+        assertEquals(-1, bucket.acquire(0));
+    }
+
+    @Test
+    void shouldReserveFutureTokenWithinMaxWait() {
+        TokenBucket bucket = new TokenBucket(1, 1);
+        long interval = TimeUnit.SECONDS.toNanos(1);
+
+        assertEquals(0, bucket.acquire(0));
+        long wait = bucket.acquire(bucket.getRefillNanos());
+
+        assertTrue(wait > 0 && wait <= interval, () -> "Wait " + wait);
+        // Следующий токен зарезервирован еще дальше
+        assertEquals(-1, bucket.acquire(0));
+        assertEquals(-1, bucket.acquire(interval));
+    }
+
+    @Test
+    void shouldRefillOverTime() throws Exception {
+        TokenBucket bucket = new TokenBucket(100, 1);
+
+        assertEquals(0, bucket.acquire(0));
+        assertEquals(-1, bucket.acquire(0));
+        Thread.sleep(30);
+
+        assertEquals(0, bucket.acquire(0));
+    }
+
+    @Test
+    void shouldReturnReleasedToken() {
+        TokenBucket bucket = new TokenBucket(SLOW_RATE, 2);
+        bucket.acquire(0);
+        bucket.acquire(0);
+        assertEquals(-1, bucket.acquire(0));
+
+        bucket.release();
+
+        assertEquals(0, bucket.acquire(0));
+        assertEquals(-1, bucket.acquire(0));
+    }
+
+    @Test
+    void shouldNotGiveMoreThanBurstToConcurrentThreads() throws Exception {
+        int burst = 100;
+        int threads = 8;
+        TokenBucket bucket = new TokenBucket(SLOW_RATE, burst);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    int acquired = 0;
+                    for (int j = 0; j < burst; j++) {
+                        if (bucket.acquire(0) == 0) {
+                            acquired++;
+                        }
+                    }
+                    return acquired;
+                }));
+            }
+            start.countDown();
+            int acquired = 0;
+            for (Future<Integer> result : results) {
+                acquired += result.get(10, TimeUnit.SECONDS);
+            }
+
+            assertEquals(burst, acquired);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void shouldRejectInvalidParameters() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(1, 0));
+    }
+}
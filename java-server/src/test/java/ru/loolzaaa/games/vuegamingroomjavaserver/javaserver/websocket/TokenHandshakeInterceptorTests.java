@@ -0,0 +1,61 @@
+package ru.loolzaaa.games.vuegamingroomjavaserver.javaserver.websocket;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.socket.WebSocketHandler;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TokenHandshakeInterceptorTests {
+
+    final TokenHandshakeInterceptor interceptor = new TokenHandshakeInterceptor();
+
+    final Map<String, Object> attributes = new HashMap<>();
+
+    @Test
+    void shouldUseJsonWithoutFormatParameter() {
+        assertTrue(handshake("token=user:ws"));
+
+        assertEquals("user:ws", attributes.get("token"));
+        assertEquals(WireFormat.JSON, attributes.get(GameWebSocketHandler.FORMAT_ATTRIBUTE));
+        assertEquals(false, attributes.get(GameWebSocketHandler.COMPRESSION_ATTRIBUTE));
+    }
+
+    @Test
+    void shouldNegotiateBinaryFormats() {
+        assertTrue(handshake("token=user:ws&format=cbor"));
+        assertEquals(WireFormat.CBOR, attributes.get(GameWebSocketHandler.FORMAT_ATTRIBUTE));
+
+        assertTrue(handshake("format=SMILE&token=user:ws&compression=deflate"));
+        assertEquals(WireFormat.SMILE, attributes.get(GameWebSocketHandler.FORMAT_ATTRIBUTE));
+        assertEquals(true, attributes.get(GameWebSocketHandler.COMPRESSION_ATTRIBUTE));
+    }
+
+    @Test
+    void shouldRejectUnknownFormat() {
+        assertFalse(handshake("token=user:ws&format=xml"));
+
+        assertTrue(attributes.isEmpty());
+    }
+
+    @Test
+    void shouldRejectHandshakeWithoutToken() {
+        assertFalse(handshake("format=cbor"));
+        assertFalse(handshake(null));
+
+        assertTrue(attributes.isEmpty());
+    }
+
+    boolean handshake(String query) {
+        ServerHttpRequest request = mock(ServerHttpRequest.class);
+        when(request.getURI()).thenReturn(URI.create("ws://localhost/ws" + (query != null ? "?" + query : "")));
+        return interceptor.beforeHandshake(request, mock(ServerHttpResponse.class), mock(WebSocketHandler.class), attributes);
+    }
+}